@@ -45,6 +45,10 @@ scp -r -o StrictHostKeyChecking=no -i $AWS_EC2_SSH_KEYPAR_PATH \
 cmd="cd /home/ec2-user/cnv-project; source /etc/profile.d/maven.sh; mvn clean package"
 ssh -o StrictHostKeyChecking=no -i $AWS_EC2_SSH_KEYPAR_PATH ec2-user@$(cat vm-instance.dns) "$cmd"
 
+# Build the 15-puzzle pattern databases into the image, so workers only memory-map them
+cmd="cd /home/ec2-user/cnv-project; FIFTEENPUZZLE_PDB_DIR=/home/ec2-user/cnv-project/pdb java -cp fifteenpuzzle/target/fifteenpuzzle-1.0.0-SNAPSHOT-jar-with-dependencies.jar pt.ulisboa.tecnico.cnv.fifteenpuzzle.solvers.PatternDatabases"
+ssh -o StrictHostKeyChecking=no -i $AWS_EC2_SSH_KEYPAR_PATH ec2-user@$(cat vm-instance.dns) "$cmd"
+
 # Setup web server to start on instance launch
 cmd='
 echo "[Unit]
@@ -65,7 +69,9 @@ WantedBy=multi-user.target" | sudo tee /etc/systemd/system/rc-local.service
 echo "#!/bin/sh -e
 cd /home/ec2-user/cnv-project
 source /home/ec2-user/cnv-project/config.sh
+export FIFTEENPUZZLE_PDB_DIR=/home/ec2-user/cnv-project/pdb
 java -cp webserver/target/webserver-1.0.0-SNAPSHOT-jar-with-dependencies.jar \
+--add-modules jdk.incubator.vector \
 -Xbootclasspath/a:javassist/target/JavassistWrapper-1.0-jar-with-dependencies.jar \
 -javaagent:webserver/target/webserver-1.0.0-SNAPSHOT-jar-with-dependencies.jar=ICount:pt.ulisboa.tecnico.cnv.capturetheflag,pt.ulisboa.tecnico.cnv.fifteenpuzzle,pt.ulisboa.tecnico.cnv.gameoflife:output \
 pt.ulisboa.tecnico.cnv.webserver.WebServer &> /tmp/webserver.log &
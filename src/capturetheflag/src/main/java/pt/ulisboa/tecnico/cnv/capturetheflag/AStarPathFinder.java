@@ -0,0 +1,190 @@
+package pt.ulisboa.tecnico.cnv.capturetheflag;
+
+import java.util.Arrays;
+
+/**
+ * A* path queries guided by Manhattan distance, with the same answers as {@link PathFinder}. The first step of the path
+ * a breadth-first search finds is the first neighbour of the source, in the order of {@link Grid#DIRECTIONS}, that lies
+ * on some shortest path. So a query finds a shortest path with one A* search, then tries the neighbours that come
+ * before its first step, in that order, with searches bounded by the remaining distance. Neighbours facing away from
+ * the target fail the bound before any search. Each search expands nodes with the smallest f first and, among those,
+ * the deepest, which in open areas goes straight for the target.
+ *
+ * Like {@link PathFinder}, the workspace is reused by every query: g values and closed cells are stamped with the
+ * number of the current search, and the open list is a binary heap of packed (f, g) keys with parallel cells.
+ */
+public class AStarPathFinder implements StepFinder {
+
+    private static final int NONE = -1;
+
+    private final Grid grid;
+    private final int size;
+
+    private final int[] g;
+    /**
+     * First step of the best path found to each cell.
+     */
+    private final int[] first;
+    private final int[] seen;
+    private final int[] closed;
+    private int generation = 0;
+
+    /**
+     * Open list. A cell may be pushed again with a smaller g; the older entry is skipped when popped.
+     */
+    private long[] keys = new long[256];
+    private int[] heapCells = new int[256];
+    private int heapSize;
+
+    public AStarPathFinder(Grid grid) {
+        this.grid = grid;
+        this.size = grid.getSize();
+        int cells = size * size;
+        this.g = new int[cells];
+        this.first = new int[cells];
+        this.seen = new int[cells];
+        this.closed = new int[cells];
+    }
+
+    @Override
+    public int nextStep(int source, int target) {
+        if (source == target) {
+            return -1;
+        }
+        int distance = search(source, target, Integer.MAX_VALUE);
+        if (distance == NONE) {
+            return -1; // no path found
+        }
+        int step = first[target];
+        byte[] cells = grid.cells;
+        int x = source / size;
+        int y = source % size;
+        for (int k = 0; k < 4; k++) {
+            int n = neighbour(source, x, y, k);
+            if (n == step) {
+                return n;
+            }
+            if (n < 0) {
+                continue;
+            }
+            if (!PathFinder.isPassable(cells[n], false) || manhattan(n, target) > distance - 1) {
+                continue;
+            }
+            if (search(n, target, distance - 1) != NONE) {
+                return n;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Length of a shortest path from start to target, or {@link #NONE} if there is none of at most {@code bound} moves.
+     */
+    private int search(int start, int target, int bound) {
+        if (++generation == 0) {
+            // The stamps wrapped around: forget them all.
+            Arrays.fill(seen, 0);
+            Arrays.fill(closed, 0);
+            generation = 1;
+        }
+        byte[] cells = grid.cells;
+        heapSize = 0;
+        g[start] = 0;
+        seen[start] = generation;
+        push(manhattan(start, target), 0, start);
+
+        while (heapSize > 0) {
+            long key = keys[0];
+            int c = pop();
+            int gc = Integer.MAX_VALUE - (int) key;
+            if (closed[c] == generation || gc != g[c]) {
+                continue;
+            }
+            if (c == target) {
+                return gc;
+            }
+            closed[c] = generation;
+            int next = gc + 1;
+            int x = c / size;
+            int y = c % size;
+            for (int k = 0; k < 4; k++) {
+                int n = neighbour(c, x, y, k);
+                if (n < 0 || closed[n] == generation || (seen[n] == generation && g[n] <= next)
+                        || !PathFinder.isPassable(cells[n], n == target)) {
+                    continue;
+                }
+                int f = next + manhattan(n, target);
+                if (f > bound) {
+                    continue;
+                }
+                g[n] = next;
+                first[n] = (c == start) ? n : first[c];
+                seen[n] = generation;
+                push(f, next, n);
+            }
+        }
+        return NONE;
+    }
+
+    private int manhattan(int a, int b) {
+        return Math.abs(a / size - b / size) + Math.abs(a % size - b % size);
+    }
+
+    /**
+     * Neighbour k (up, down, left, right) of the cell at (x, y), or -1 past the border.
+     */
+    private int neighbour(int cell, int x, int y, int k) {
+        switch (k) {
+            case 0: return (x == 0) ? -1 : cell - size;
+            case 1: return (x == size - 1) ? -1 : cell + size;
+            case 2: return (y == 0) ? -1 : cell - 1;
+            default: return (y == size - 1) ? -1 : cell + 1;
+        }
+    }
+
+    /**
+     * Smaller f first, then larger g: the key holds f in its high half and Integer.MAX_VALUE - g in its low half.
+     */
+    private void push(int f, int gc, int cell) {
+        if (heapSize == keys.length) {
+            keys = Arrays.copyOf(keys, 2 * heapSize);
+            heapCells = Arrays.copyOf(heapCells, 2 * heapSize);
+        }
+        long key = (long) f << 32 | (Integer.MAX_VALUE - gc);
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= key) {
+                break;
+            }
+            keys[i] = keys[parent];
+            heapCells[i] = heapCells[parent];
+            i = parent;
+        }
+        keys[i] = key;
+        heapCells[i] = cell;
+    }
+
+    private int pop() {
+        int top = heapCells[0];
+        long key = keys[--heapSize];
+        int cell = heapCells[heapSize];
+        int i = 0;
+        int half = heapSize >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && keys[child + 1] < keys[child]) {
+                child++;
+            }
+            if (key <= keys[child]) {
+                break;
+            }
+            keys[i] = keys[child];
+            heapCells[i] = heapCells[child];
+            i = child;
+        }
+        keys[i] = key;
+        heapCells[i] = cell;
+        return top;
+    }
+}
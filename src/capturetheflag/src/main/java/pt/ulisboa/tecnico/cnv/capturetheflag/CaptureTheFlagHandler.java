@@ -20,18 +20,23 @@ import pt.ulisboa.tecnico.cnv.storage.StorageUtil;
 public class CaptureTheFlagHandler implements HttpHandler, RequestHandler<Map<String, String>, String> {
 
     /**
-     * Simulation entrypoint.
+     * Simulation entrypoint. Games are deterministic, so outputs come from the {@link SimulationCache} when the same
+     * game was played before.
      */
-    private String handleWorkload(int gridSize, int numBlueAgents, int numRedAgents, char flagPlacementType) {
-        try {
-            int numFlagsPerTeam = gridSize / 2;
-            Simulation simulation = new Simulation();
-            simulation.init(gridSize, flagPlacementType, numBlueAgents, numRedAgents, numFlagsPerTeam, false);
-            simulation.run();
-            return simulation.getData();
-        } catch (Exception e) {
-            return e.getMessage();
+    private SimulationOutput handleWorkload(int gridSize, int numBlueAgents, int numRedAgents, char flagPlacementType, String pathing) {
+        SimulationOutput output = SimulationCache.getOutput(gridSize, flagPlacementType, numBlueAgents, numRedAgents, pathing);
+        if (output != null) {
+            return output;
         }
+        int numFlagsPerTeam = gridSize / 2;
+        Simulation simulation = new Simulation(pathing);
+        simulation.init(gridSize, flagPlacementType, numBlueAgents, numRedAgents, numFlagsPerTeam, false);
+        simulation.run();
+        output = simulation.getOutput();
+        SimulationCache.putOutput(gridSize, flagPlacementType, numBlueAgents, numRedAgents, pathing, output);
+        // Lets the metrics tell simulated from cached requests.
+        ICount.getThreadStatistics().setSimulatedWork(simulation.getRounds());
+        return output;
     }
 
     /**
@@ -71,15 +76,42 @@ public class CaptureTheFlagHandler implements HttpHandler, RequestHandler<Map<St
             return;
         }
 
-        String response = handleWorkload(gridSize, numBlueAgents, numRedAgents, flagPlacementType);
+        String pathing;
+        String verbosity;
+        try {
+            pathing = Simulation.pathingOrDefault(parameters.get("pathing"));
+            verbosity = SimulationOutput.verbosityOrDefault(parameters.get("verbosity"));
+        } catch (IllegalArgumentException e) {
+            String response = e.getMessage();
+            he.sendResponseHeaders(400, response.length());
+            OutputStream os = he.getResponseBody();
+            os.write(response.getBytes());
+            os.close();
+            return;
+        }
+
+        SimulationOutput output;
+        try {
+            output = handleWorkload(gridSize, numBlueAgents, numRedAgents, flagPlacementType, pathing);
+        } catch (Exception e) {
+            String response = e.getMessage();
+            he.sendResponseHeaders(200, response.length());
+            OutputStream os = he.getResponseBody();
+            os.write(response.getBytes());
+            os.close();
+            ICount.clearThreadStatistics();
+            return;
+        }
 
-        he.sendResponseHeaders(200, response.length());
+        // The output bytes go straight into the response, without a copy as a string.
+        he.sendResponseHeaders(200, output.length(verbosity));
         OutputStream os = he.getResponseBody();
-        os.write(response.getBytes());
+        output.writeTo(os, verbosity);
         os.close();
 
         Statistics requestStatistics = ICount.getThreadStatistics();
-        if(storeMetrics) {
+        // Cached outputs cost next to nothing, so they would only skew the stored metrics.
+        if(storeMetrics && requestStatistics.getSimulatedWork() > 0) {
             StorageUtil.storeMetrics(parameters, requestStatistics, "capturetheflag");
         }
         ICount.clearThreadStatistics();
@@ -99,13 +131,26 @@ public class CaptureTheFlagHandler implements HttpHandler, RequestHandler<Map<St
             return "Invalid input. Please provide a valid grid size, number of blue agents, number of red agents and flag placement type (A, B or C).";
         }
 
-        return handleWorkload(gridSize, numBlueAgents, numRedAgents, flagPlacementType);
+        String pathing;
+        String verbosity;
+        try {
+            pathing = Simulation.pathingOrDefault(event.get("pathing"));
+            verbosity = SimulationOutput.verbosityOrDefault(event.get("verbosity"));
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+
+        try {
+            return handleWorkload(gridSize, numBlueAgents, numRedAgents, flagPlacementType, pathing).toString(verbosity);
+        } catch (Exception e) {
+            return e.getMessage();
+        }
     }
 
     public static void main(String[] args) {
         if (args.length < 4) {
-            System.out.println("Usage: java pt.ulisboa.tecnico.cnv.capturetheflag.CaptureTheFlagHandler <grid_size> <num_blue_agents> <num_red_agents> <flag_placement_type>");
-            System.out.println("Where: grid_size >= 10; num_blue_agents <= grid_size; num_red_agents <= grid_size; flag_placement_type=A|B|C");
+            System.out.println("Usage: java pt.ulisboa.tecnico.cnv.capturetheflag.CaptureTheFlagHandler <grid_size> <num_blue_agents> <num_red_agents> <flag_placement_type> [pathing] [verbosity]");
+            System.out.println("Where: grid_size >= 10; num_blue_agents <= grid_size; num_red_agents <= grid_size; flag_placement_type=A|B|C; pathing=bfs|astar|field; verbosity=full|final|summary");
             return;
         }
 
@@ -113,6 +158,8 @@ public class CaptureTheFlagHandler implements HttpHandler, RequestHandler<Map<St
         int numBlueAgents = Integer.parseInt(args[1]);
         int numRedAgents = Integer.parseInt(args[2]);
         char flagPlacementType = args[3].toUpperCase().charAt(0);
+        String pathing = Simulation.pathingOrDefault((args.length > 4) ? args[4] : null);
+        String verbosity = SimulationOutput.verbosityOrDefault((args.length > 5) ? args[5] : null);
 
         if (gridSize < 10) {
             throw new IllegalArgumentException("grid size must be greater or equal to 10");
@@ -129,10 +176,10 @@ public class CaptureTheFlagHandler implements HttpHandler, RequestHandler<Map<St
         long startTime = System.nanoTime();
 
         int numFlagsPerTeam = gridSize / 2;
-        Simulation simulation = new Simulation();
+        Simulation simulation = new Simulation(pathing);
         simulation.init(gridSize, flagPlacementType, numBlueAgents, numRedAgents, numFlagsPerTeam, true);
         simulation.run();
-        System.out.println(simulation.getData());
+        System.out.println(simulation.getOutput().toString(verbosity));
 
         long endTime = System.nanoTime();
         System.out.println("[INFO] exec time: " + ((endTime - startTime) / 1_000_000) + " ms");
@@ -0,0 +1,331 @@
+package pt.ulisboa.tecnico.cnv.capturetheflag;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Distance from every cell to the nearest of a team's flags, first computed by one breadth-first search started from
+ * all the flags at once. Obstacles, agents and the flags of the other team block the way, as in {@link PathFinder}, so
+ * the distances of an agent's neighbours are those of shortest paths around every other agent.
+ *
+ * After that the field is repaired rather than recomputed. The simulation reports the cells agents leave and enter
+ * ({@link #changed}, which also covers captured flags), and {@link #update} brings those cells of the field's own copy
+ * of the grid up to date, so the field is a snapshot of the grid at the time of the update. Distances only depend on
+ * which cells are open, so a cell that was left and entered again since the last update costs nothing. Opening a cell
+ * spreads the distances it shortens outwards from it. Closing a cell first finds the cells whose every shortest path
+ * went through it, in the manner of LPA*: level by level, a cell is lost when none of its neighbours one step closer to
+ * a flag is still valid. Those cells then get new distances from the valid cells around them, in increasing order.
+ *
+ * Repairs only visit the cells whose distance changes and their neighbours, which is far less than the grid when few
+ * agents move. When many do, the field is recomputed instead: right away when more than one cell per
+ * {@link #CELLS_PER_CHANGE} cells of the grid changed, or once a repair has visited more than a quarter of the grid.
+ */
+public class DistanceField {
+
+    public static final int UNREACHABLE = -1;
+
+    /**
+     * Updates with more changed cells than one per CELLS_PER_CHANGE cells of the grid recompute the field.
+     */
+    static final int CELLS_PER_CHANGE = 128;
+
+    private final Grid grid;
+    private final int size;
+    private final int[] distance;
+    /**
+     * Cells the field was last updated for: passable cells and remaining flags.
+     */
+    private final boolean[] open;
+    private final boolean[] source;
+    private boolean computed = false;
+
+    /**
+     * Cells changed since the last update, each listed once.
+     */
+    private int[] pending = new int[16];
+    private int pendingCount = 0;
+    private final boolean[] isPending;
+
+    /**
+     * Cells visited by the repairs of the current update.
+     */
+    private int work;
+
+    private final int[] queue;
+    /**
+     * Cells lost by the current {@link #repairClosed} have the stamp of the current repair.
+     */
+    private final int[] lost;
+    private int generation = 0;
+    /**
+     * Cells with a new tentative distance, packed as {@code distance << 32 | cell}.
+     */
+    private long[] seeds = new long[16];
+
+    public DistanceField(Grid grid) {
+        this.grid = grid;
+        this.size = grid.getSize();
+        int cells = size * size;
+        this.distance = new int[cells];
+        this.open = new boolean[cells];
+        this.source = new boolean[cells];
+        this.isPending = new boolean[cells];
+        this.queue = new int[cells];
+        this.lost = new int[cells];
+    }
+
+    /**
+     * Recomputes the field from the given flags and the grid as it is now, in O(grid).
+     */
+    public void compute(List<int[]> flagPositions) {
+        Arrays.fill(distance, UNREACHABLE);
+        Arrays.fill(source, false);
+        byte[] cells = grid.cells;
+        for (int c = 0; c < cells.length; c++) {
+            open[c] = isPassable(cells[c]);
+        }
+        int tail = 0;
+        for (int[] flag : flagPositions) {
+            int c = grid.index(flag[0], flag[1]);
+            open[c] = true;
+            source[c] = true;
+            distance[c] = 0;
+            queue[tail++] = c;
+        }
+        spread(0, tail, 0);
+        for (int i = 0; i < pendingCount; i++) {
+            isPending[pending[i]] = false;
+        }
+        pendingCount = 0;
+        computed = true;
+    }
+
+    /**
+     * Brings the field up to date with the grid: computes it from the flags the first time, and repairs the cells
+     * changed since then afterwards.
+     */
+    public void update(List<int[]> flagPositions) {
+        if (!computed) {
+            compute(flagPositions);
+            return;
+        }
+        byte[] cells = grid.cells;
+        if (pendingCount > cells.length / CELLS_PER_CHANGE) {
+            compute(flagPositions);
+            return;
+        }
+        work = 0;
+        for (int i = 0; i < pendingCount; i++) {
+            int c = pending[i];
+            isPending[c] = false;
+            boolean isOpen = isPassable(cells[c]) || (source[c] && isFlag(cells[c]));
+            if (isOpen != open[c]) {
+                if (isOpen) {
+                    repairOpened(c);
+                } else {
+                    repairClosed(c);
+                }
+            }
+            if (work > cells.length / 4) {
+                // Cheaper to start over.
+                compute(flagPositions);
+                return;
+            }
+        }
+        pendingCount = 0;
+    }
+
+    /**
+     * Records that an agent left or entered the cell, capturing the flag there if any.
+     */
+    public void changed(int cell) {
+        if (!computed || isPending[cell]) {
+            return;
+        }
+        if (pendingCount == pending.length) {
+            pending = Arrays.copyOf(pending, 2 * pendingCount);
+        }
+        isPending[cell] = true;
+        pending[pendingCount++] = cell;
+    }
+
+    public int distance(int cell) {
+        return distance[cell];
+    }
+
+    /**
+     * Neighbour of the cell closest to a flag, the first in the order of {@link Grid#DIRECTIONS} on ties, or -1 if no
+     * flag can be reached. The neighbour may have been taken by an agent since the field was updated.
+     */
+    public int nextStep(int cell) {
+        int best = -1;
+        int bestDistance = Integer.MAX_VALUE;
+        int x = cell / size;
+        int y = cell % size;
+        for (int k = 0; k < 4; k++) {
+            int n = neighbour(cell, x, y, k);
+            if (n >= 0 && distance[n] != UNREACHABLE && distance[n] < bestDistance) {
+                best = n;
+                bestDistance = distance[n];
+            }
+        }
+        return best;
+    }
+
+    private void repairOpened(int cell) {
+        open[cell] = true;
+        int d = closestNeighbour(cell);
+        if (d == UNREACHABLE) {
+            return;
+        }
+        distance[cell] = d + 1;
+        queue[0] = cell;
+        spread(0, 1, 0);
+    }
+
+    private void repairClosed(int cell) {
+        open[cell] = false;
+        source[cell] = false;
+        if (distance[cell] == UNREACHABLE) {
+            return;
+        }
+        if (++generation == 0) {
+            Arrays.fill(lost, 0);
+            generation = 1;
+        }
+
+        // Cells lost with it, level by level: each level is complete before the next one is checked.
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = cell;
+        lost[cell] = generation;
+        while (head < tail) {
+            int c = queue[head++];
+            int next = distance[c] + 1;
+            int x = c / size;
+            int y = c % size;
+            for (int k = 0; k < 4; k++) {
+                int n = neighbour(c, x, y, k);
+                if (n >= 0 && lost[n] != generation && open[n] && !source[n] && distance[n] == next
+                        && !isSupported(n)) {
+                    work++;
+                    lost[n] = generation;
+                    queue[tail++] = n;
+                }
+            }
+        }
+        for (int i = 0; i < tail; i++) {
+            distance[queue[i]] = UNREACHABLE;
+        }
+
+        // New distances from the valid cells around them.
+        int count = 0;
+        for (int i = 1; i < tail; i++) {
+            int c = queue[i];
+            int d = closestNeighbour(c);
+            if (d != UNREACHABLE) {
+                distance[c] = d + 1;
+                if (count == seeds.length) {
+                    seeds = Arrays.copyOf(seeds, 2 * count);
+                }
+                seeds[count++] = (long) (d + 1) << 32 | c;
+            }
+        }
+        Arrays.sort(seeds, 0, count);
+        spread(0, 0, count);
+    }
+
+    /**
+     * Whether a neighbour one step closer to a flag is still valid.
+     */
+    private boolean isSupported(int cell) {
+        int previous = distance[cell] - 1;
+        int x = cell / size;
+        int y = cell % size;
+        for (int k = 0; k < 4; k++) {
+            int n = neighbour(cell, x, y, k);
+            if (n >= 0 && lost[n] != generation && open[n] && distance[n] == previous) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Smallest distance among the open neighbours, or {@link #UNREACHABLE}.
+     */
+    private int closestNeighbour(int cell) {
+        int best = UNREACHABLE;
+        int x = cell / size;
+        int y = cell % size;
+        for (int k = 0; k < 4; k++) {
+            int n = neighbour(cell, x, y, k);
+            if (n >= 0 && open[n] && distance[n] != UNREACHABLE && (best == UNREACHABLE || distance[n] < best)) {
+                best = distance[n];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Breadth-first propagation of shorter distances, from the cells in {@code queue[head..tail)} and the first
+     * {@code seedCount} sorted {@link #seeds}. Cells are taken in increasing distance from either, so each one is final
+     * when it is taken.
+     */
+    private void spread(int head, int tail, int seedCount) {
+        int s = 0;
+        while (head < tail || s < seedCount) {
+            int c;
+            if (head < tail && (s == seedCount || distance[queue[head]] <= (int) (seeds[s] >>> 32))) {
+                c = queue[head++];
+            } else {
+                long seed = seeds[s++];
+                c = (int) seed;
+                if (distance[c] != (int) (seed >>> 32)) {
+                    continue; // shortened since it was seeded
+                }
+            }
+            work++;
+            int next = distance[c] + 1;
+            int x = c / size;
+            int y = c % size;
+            for (int k = 0; k < 4; k++) {
+                int n = neighbour(c, x, y, k);
+                if (n >= 0 && open[n] && (distance[n] == UNREACHABLE || distance[n] > next)) {
+                    distance[n] = next;
+                    queue[tail++] = n;
+                }
+            }
+        }
+    }
+
+    /**
+     * Neighbour k (up, down, left, right) of the cell at (x, y), or -1 past the border.
+     */
+    private int neighbour(int cell, int x, int y, int k) {
+        switch (k) {
+            case 0: return (x == 0) ? -1 : cell - size;
+            case 1: return (x == size - 1) ? -1 : cell + size;
+            case 2: return (y == 0) ? -1 : cell - 1;
+            default: return (y == size - 1) ? -1 : cell + 1;
+        }
+    }
+
+    /**
+     * Cells the search crosses. The flags it starts from are never crossed, so any other flag blocks it.
+     */
+    private static boolean isPassable(byte cell) {
+        switch (cell) {
+            case Grid.CellType.EMPTY:
+            case Grid.CellType.BLUE_TRACE:
+            case Grid.CellType.RED_TRACE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isFlag(byte cell) {
+        return cell == Grid.CellType.BLUE_FLAG || cell == Grid.CellType.RED_FLAG;
+    }
+}
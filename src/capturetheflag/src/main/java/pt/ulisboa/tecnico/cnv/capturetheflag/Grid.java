@@ -1,5 +1,8 @@
 package pt.ulisboa.tecnico.cnv.capturetheflag;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
@@ -8,7 +11,10 @@ import java.util.Random;
 
 public class Grid {
     int size;
-    CellType[][] cells;
+    /**
+     * Cell types in row-major order, the cell at (x, y) being at {@code x * size + y}.
+     */
+    byte[] cells;
     Random random; // used for spawning obstacles and flags (type C) based on a given seed (grid size)
 
     boolean coloredOutput = false;
@@ -33,30 +39,40 @@ public class Grid {
 
     static final int[][] DIRECTIONS = {{-1,0},{1,0},{0,-1},{0,1}};
 
-    enum CellType {
-        EMPTY,
-        OBSTACLE,
-        RED_FLAG,
-        BLUE_FLAG,
-        RED_AGENT,
-        BLUE_AGENT,
-        RED_AGENT_ON_COOLDOWN,
-        BLUE_AGENT_ON_COOLDOWN,
-        RED_TRACE,
-        BLUE_TRACE
+    /**
+     * Bytes of the symbol of each cell type, plain and colored.
+     */
+    private static final byte[][] SYMBOLS = symbols(false);
+    private static final byte[][] COLORED_SYMBOLS = symbols(true);
+
+    /**
+     * Codes of the cell types in {@link #cells}.
+     */
+    static final class CellType {
+        static final byte EMPTY                  = 0;
+        static final byte OBSTACLE               = 1;
+        static final byte RED_FLAG               = 2;
+        static final byte BLUE_FLAG              = 3;
+        static final byte RED_AGENT              = 4;
+        static final byte BLUE_AGENT             = 5;
+        static final byte RED_AGENT_ON_COOLDOWN  = 6;
+        static final byte BLUE_AGENT_ON_COOLDOWN = 7;
+        static final byte RED_TRACE              = 8;
+        static final byte BLUE_TRACE             = 9;
+        static final int COUNT                   = 10;
+
+        private CellType() {}
     }
 
     public Grid(int size, boolean coloredOutput) {
         this.size   = size;
         this.random = new Random(size);
-        this.cells  = new CellType[size][size];
+        this.cells  = new byte[size * size];
         this.coloredOutput = coloredOutput;
     }
 
     public void init() {
-        for (int i = 0; i < size; i++) {
-            Arrays.fill(cells[i], CellType.EMPTY);
-        }
+        Arrays.fill(cells, CellType.EMPTY);
     }
 
     public void spawnObstacles() {
@@ -69,9 +85,9 @@ public class Grid {
             int x = random.nextInt(size);
             int y = random.nextInt(size);
             int yM = size - 1 - y;  // make spawning symmetric so that it is fair for both teams
-            if (cells[x][y] == CellType.EMPTY && cells[x][yM] == CellType.EMPTY) {
-                cells[x][y]  = CellType.OBSTACLE;
-                cells[x][yM] = CellType.OBSTACLE;
+            if (cells[index(x, y)] == CellType.EMPTY && cells[index(x, yM)] == CellType.EMPTY) {
+                cells[index(x, y)]  = CellType.OBSTACLE;
+                cells[index(x, yM)] = CellType.OBSTACLE;
                 placed++;
             }
         }
@@ -156,20 +172,20 @@ public class Grid {
         }
     }
 
-    private void placeFlag(int x, int y, CellType flagType, List<int[]> outList) {
-        cells[x][y] = flagType;
+    private void placeFlag(int x, int y, byte flagType, List<int[]> outList) {
+        cells[index(x, y)] = flagType;
         outList.add(new int[]{x, y});
         clearSurroundings(x, y);
     }
 
     private boolean isValidFlagSpot(int x, int y) {
-        if (!inBounds(x, y) || cells[x][y] != CellType.EMPTY) return false;
+        if (!inBounds(x, y) || cells[index(x, y)] != CellType.EMPTY) return false;
         // ensure there are no adjacent flags
         for (int dx = -1; dx <= 1; dx++) {
             for (int dy = -1; dy <= 1; dy++) {
                 if (dx == 0 && dy == 0) continue;
                 int nx = x + dx, ny = y + dy;
-                if (inBounds(nx, ny) && (cells[nx][ny] == CellType.RED_FLAG || cells[nx][ny] == CellType.BLUE_FLAG)) {
+                if (inBounds(nx, ny) && (cells[index(nx, ny)] == CellType.RED_FLAG || cells[index(nx, ny)] == CellType.BLUE_FLAG)) {
                     return false;
                 }
             }
@@ -184,14 +200,14 @@ public class Grid {
                 if (dx == 0 && dy == 0) continue;
                 int nx = x + dx, ny = y + dy;
                 if (inBounds(nx, ny) &&
-                        (cells[nx][ny] != CellType.EMPTY && cells[nx][ny] != CellType.RED_FLAG && cells[nx][ny] != CellType.BLUE_FLAG)) {
-                    cells[nx][ny] = CellType.EMPTY;
+                        (cells[index(nx, ny)] != CellType.EMPTY && cells[index(nx, ny)] != CellType.RED_FLAG && cells[index(nx, ny)] != CellType.BLUE_FLAG)) {
+                    cells[index(nx, ny)] = CellType.EMPTY;
                 }
             }
         }
     }
 
-    private void placeAgents(List<Agent> team, CellType cellType, int startRow, int startCol, int maxAgents, boolean isBlue) {
+    private void placeAgents(List<Agent> team, byte cellType, int startRow, int startCol, int maxAgents, boolean isBlue) {
         boolean[][] visited = new boolean[this.size][this.size];
         Queue<int[]> q = new LinkedList<>();
         q.add(new int[]{startRow, startCol});
@@ -200,9 +216,9 @@ public class Grid {
             int[] p = q.poll();
             int x = p[0];
             int y = p[1];
-            if (this.cells[x][y] == CellType.EMPTY) {
+            if (this.cells[index(x, y)] == CellType.EMPTY) {
                 team.add(new Agent(x, y, isBlue));
-                this.cells[x][y] = cellType;
+                this.cells[index(x, y)] = cellType;
             }
             for (int[] dir : DIRECTIONS) {
                 int nx = x + dir[0];
@@ -220,67 +236,88 @@ public class Grid {
         placeAgents(redAgents, CellType.RED_AGENT, this.size/2, this.size-1, num_red_agents, false);
     }
 
+    int index(int x, int y) {
+        return x * size + y;
+    }
+
     public boolean inBounds(int x, int y) {
         return x >= 0 && x < this.size && y >= 0 && y < this.size;
     }
 
     public boolean cellHasAgent(int x, int y) {
-        switch (this.cells[x][y]) {
-            case BLUE_AGENT:
-            case BLUE_AGENT_ON_COOLDOWN:
-            case RED_AGENT:
-            case RED_AGENT_ON_COOLDOWN:
+        switch (this.cells[index(x, y)]) {
+            case CellType.BLUE_AGENT:
+            case CellType.BLUE_AGENT_ON_COOLDOWN:
+            case CellType.RED_AGENT:
+            case CellType.RED_AGENT_ON_COOLDOWN:
                 return true;
             default: return false;
         }
     }
 
     public boolean cellHasObstacle(int x, int y) {
-        return this.cells[x][y] == CellType.OBSTACLE;
+        return this.cells[index(x, y)] == CellType.OBSTACLE;
     }
 
     public boolean cellHasFlag(int x, int y) {
-        return this.cells[x][y] == CellType.BLUE_FLAG || this.cells[x][y] == CellType.RED_FLAG;
+        return this.cells[index(x, y)] == CellType.BLUE_FLAG || this.cells[index(x, y)] == CellType.RED_FLAG;
     }
 
     public void markCellWithAgent(int x, int y, boolean isBlue) {
-        cells[x][y] = isBlue ? CellType.BLUE_AGENT : CellType.RED_AGENT;
+        cells[index(x, y)] = isBlue ? CellType.BLUE_AGENT : CellType.RED_AGENT;
     }
 
     public void markCellWithAgentOnCooldown(int x, int y, boolean isBlue) {
-        cells[x][y] = isBlue ? CellType.BLUE_AGENT_ON_COOLDOWN : CellType.RED_AGENT_ON_COOLDOWN;
+        cells[index(x, y)] = isBlue ? CellType.BLUE_AGENT_ON_COOLDOWN : CellType.RED_AGENT_ON_COOLDOWN;
     }
 
     public void markCellWithAgentTrace(int x, int y, boolean isBlue) {
-        cells[x][y] = isBlue ? CellType.BLUE_TRACE : CellType.RED_TRACE;
+        cells[index(x, y)] = isBlue ? CellType.BLUE_TRACE : CellType.RED_TRACE;
     }
 
     public int getSize() {
         return size;
     }
 
-    public void printBoard(StringBuilder sb) {
+    /**
+     * Writes the board one row at a time, each cell as the bytes of its symbol.
+     */
+    public void writeBoard(OutputStream out) throws IOException {
+        byte[][] symbols = coloredOutput ? COLORED_SYMBOLS : SYMBOLS;
+        int width = 0;
+        for (byte[] symbol : symbols) {
+            width = Math.max(width, symbol.length);
+        }
+        byte[] row = new byte[this.size * width + 1];
         for (int i = 0; i < this.size; i++) {
+            int length = 0;
             for (int j = 0; j < this.size; j++) {
-                switch (this.cells[i][j]) {
-                    case EMPTY:                  sb.append(format(EMPTY)); break;
-                    case OBSTACLE:               sb.append(format(OBSTACLE)); break;
-                    case BLUE_AGENT:             sb.append(format(BLUE_AGENT)); break;
-                    case BLUE_AGENT_ON_COOLDOWN: sb.append(format(BLUE_AGENT_ON_COOLDOWN)); break;
-                    case BLUE_FLAG:              sb.append(format(BLUE_FLAG)); break;
-                    case BLUE_TRACE:             sb.append(format(BLUE_TRACE)); break;
-                    case RED_AGENT:              sb.append(format(RED_AGENT)); break;
-                    case RED_AGENT_ON_COOLDOWN:  sb.append(format(RED_AGENT_ON_COOLDOWN)); break;
-                    case RED_FLAG:               sb.append(format(RED_FLAG)); break;
-                    case RED_TRACE:              sb.append(format(RED_TRACE)); break;
-                }
+                byte[] symbol = symbols[this.cells[index(i, j)]];
+                System.arraycopy(symbol, 0, row, length, symbol.length);
+                length += symbol.length;
             }
-            sb.append("\n");
+            row[length++] = '\n';
+            out.write(row, 0, length);
         }
     }
 
-    private String format(String symbol) {
-        if (coloredOutput) {
+    private static String symbol(byte cellType) {
+        switch (cellType) {
+            case CellType.EMPTY:                  return EMPTY;
+            case CellType.OBSTACLE:               return OBSTACLE;
+            case CellType.BLUE_AGENT:             return BLUE_AGENT;
+            case CellType.BLUE_AGENT_ON_COOLDOWN: return BLUE_AGENT_ON_COOLDOWN;
+            case CellType.BLUE_FLAG:              return BLUE_FLAG;
+            case CellType.BLUE_TRACE:             return BLUE_TRACE;
+            case CellType.RED_AGENT:              return RED_AGENT;
+            case CellType.RED_AGENT_ON_COOLDOWN:  return RED_AGENT_ON_COOLDOWN;
+            case CellType.RED_FLAG:               return RED_FLAG;
+            default:                              return RED_TRACE;
+        }
+    }
+
+    private static String format(String symbol, boolean colored) {
+        if (colored) {
             String color;
             switch (symbol) {
                 case BLUE_AGENT:
@@ -299,4 +336,12 @@ public class Grid {
         }
         return symbol;
     }
+
+    private static byte[][] symbols(boolean colored) {
+        byte[][] symbols = new byte[CellType.COUNT][];
+        for (byte cellType = 0; cellType < CellType.COUNT; cellType++) {
+            symbols[cellType] = format(symbol(cellType), colored).getBytes(StandardCharsets.US_ASCII);
+        }
+        return symbols;
+    }
 }
@@ -0,0 +1,99 @@
+package pt.ulisboa.tecnico.cnv.capturetheflag;
+
+import java.util.Arrays;
+
+/**
+ * Breadth-first search workspace of a simulation, reused by every path query. Cells are the flat indices of
+ * {@link Grid#cells}, the queue and parents are plain int arrays, and a cell is visited when its stamp equals the
+ * number of the current query, so nothing is allocated or cleared between queries.
+ */
+public class PathFinder implements StepFinder {
+
+    private final Grid grid;
+    private final int size;
+
+    /**
+     * Each cell is enqueued at most once per query, so the queue never wraps.
+     */
+    private final int[] queue;
+    private final int[] parent;
+    private final int[] visited;
+    private int generation = 0;
+
+    public PathFinder(Grid grid) {
+        this.grid = grid;
+        this.size = grid.getSize();
+        int cells = size * size;
+        this.queue = new int[cells];
+        this.parent = new int[cells];
+        this.visited = new int[cells];
+    }
+
+    @Override
+    public int nextStep(int source, int target) {
+        if (source == target) {
+            return -1;
+        }
+        if (++generation == 0) {
+            // The stamps wrapped around: forget them all.
+            Arrays.fill(visited, 0);
+            generation = 1;
+        }
+        byte[] cells = grid.cells;
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        visited[source] = generation;
+        parent[source] = -1;
+
+        search:
+        while (head < tail) {
+            int c = queue[head++];
+            int x = c / size;
+            int y = c % size;
+            for (int k = 0; k < 4; k++) {
+                int n;
+                switch (k) {
+                    case 0: if (x == 0) continue; n = c - size; break;        // up
+                    case 1: if (x == size - 1) continue; n = c + size; break; // down
+                    case 2: if (y == 0) continue; n = c - 1; break;           // left
+                    default: if (y == size - 1) continue; n = c + 1; break;   // right
+                }
+                if (visited[n] == generation || !isPassable(cells[n], n == target)) {
+                    continue;
+                }
+                queue[tail++] = n;
+                visited[n] = generation;
+                parent[n] = c;
+                if (n == target) {
+                    // The parents of the target are final once it is reached.
+                    break search;
+                }
+            }
+        }
+        if (visited[target] != generation) {
+            return -1; // no path found
+        }
+
+        // Go backwards on the path to the step after the source.
+        int step = target;
+        while (parent[step] != source) {
+            step = parent[step];
+        }
+        return step;
+    }
+
+    static boolean isPassable(byte cell, boolean isTarget) {
+        switch (cell) {
+            case Grid.CellType.EMPTY:
+            case Grid.CellType.BLUE_TRACE:
+            case Grid.CellType.RED_TRACE:
+                return true;
+            case Grid.CellType.BLUE_FLAG:
+            case Grid.CellType.RED_FLAG:
+                return isTarget;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package pt.ulisboa.tecnico.cnv.capturetheflag;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Time per next-step query of the breadth-first {@link PathFinder} and of {@link AStarPathFinder}, for grid sizes 10
+ * to 100 and flag placement types A, B and C, with size / 2 blue agents and size / 3 red agents. Each game is played
+ * with the default rule; at the start of every team's turn the queries of its agents are answered by both finders,
+ * which must agree.
+ */
+public class PathFinderBenchmark {
+
+    public static void main(String[] args) {
+        int repetitions = (args.length > 0) ? Integer.parseInt(args[0]) : 3;
+
+        System.out.println("size,type,queries,bfs_us,astar_us,speedup");
+        for (int size = 10; size <= 100; size += 10) {
+            for (char type : new char[]{'A', 'B', 'C'}) {
+                Simulation simulation = new Simulation(Simulation.BFS_PATHING);
+                simulation.init(size, type, size / 2, size / 3, size / 2, false);
+                StepFinder bfs = new PathFinder(simulation.grid);
+                StepFinder astar = new AStarPathFinder(simulation.grid);
+
+                long queries = 0;
+                long bfsNanos = 0;
+                long astarNanos = 0;
+                int[] sources = new int[size];
+                int[] targets = new int[size];
+                int[] steps = new int[size];
+                for (int round = 1; !simulation.checkWin(); round++) {
+                    for (int team = 0; team < 2; team++) {
+                        List<Agent> agents = (team == 0) ? simulation.blueAgents : simulation.redAgents;
+                        List<int[]> flags = (team == 0) ? simulation.blueFlagPositions : simulation.redFlagPositions;
+                        int count = 0;
+                        for (Agent agent : agents) {
+                            int[] flag = simulation.findNearestPosition(agent.x, agent.y, flags);
+                            if (agent.cooldown == 0 && flag != null) {
+                                sources[count] = simulation.grid.index(agent.x, agent.y);
+                                targets[count] = simulation.grid.index(flag[0], flag[1]);
+                                count++;
+                            }
+                        }
+                        queries += count;
+                        bfsNanos += time(bfs, sources, targets, count, steps, repetitions);
+                        int[] expected = steps.clone();
+                        astarNanos += time(astar, sources, targets, count, steps, repetitions);
+                        for (int i = 0; i < count; i++) {
+                            if (steps[i] != expected[i]) {
+                                throw new IllegalStateException("A* and BFS steps differ on size " + size + ", type "
+                                        + type + ", round " + round);
+                            }
+                        }
+
+                        simulation.moveDetected = false;
+                        simulation.moveTeam(agents, flags, null);
+                    }
+                }
+                System.out.printf(Locale.ROOT, "%d,%c,%d,%.2f,%.2f,%.2f%n", size, type, queries,
+                        bfsNanos / 1000.0 / queries, astarNanos / 1000.0 / queries, (double) bfsNanos / astarNanos);
+            }
+        }
+    }
+
+    /**
+     * Best time of answering the queries, whose answers are left in steps.
+     */
+    private static long time(StepFinder finder, int[] sources, int[] targets, int count, int[] steps, int repetitions) {
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < repetitions; r++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                steps[i] = finder.nextStep(sources[i], targets[i]);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
@@ -1,15 +1,31 @@
 package pt.ulisboa.tecnico.cnv.capturetheflag;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Queue;
 
 public class Simulation {
+
+    /**
+     * Path rules. With {@code astar} (the default) and {@code bfs} each agent heads for its nearest flag by Manhattan
+     * distance along a shortest path around obstacles and agents, taking the same steps with {@link AStarPathFinder} or
+     * {@link PathFinder}. With {@code field} each team brings its {@link DistanceField} up to date at the start of its
+     * turn, and each agent takes the first step of a shortest path around obstacles and agents to whichever flag is
+     * nearest along such a path. Agents that moved earlier in the round still block, by making the others wait.
+     */
+    public static final String BFS_PATHING = "bfs";
+    public static final String ASTAR_PATHING = "astar";
+    public static final String FIELD_PATHING = "field";
+
+    private static final String DEFAULT_PATHING = defaultPathing();
+
     Grid grid;
+    StepFinder pathFinder;
+    DistanceField blueField;
+    DistanceField redField;
+    final String pathing;
     int blueScore;
     int redScore;
     boolean moveDetected;
@@ -18,56 +34,105 @@ public class Simulation {
     List<Agent> blueAgents;
     List<Agent> redAgents;
     int numFlagsPerTeam;
+    int rounds;
 
-    StringBuilder sb;
+    SimulationOutput output;
 
     static final int[][] DIRECTIONS = {{-1,0},{1,0},{0,-1},{0,1}};
 
     public Simulation() {
+        this(null);
+    }
+
+    public Simulation(String pathing) {
+        this.pathing = pathingOrDefault(pathing);
         this.blueScore = 0;
         this.redScore = 0;
         this.blueFlagPositions = new ArrayList<>();
         this.redFlagPositions = new ArrayList<>();
         this.blueAgents = new ArrayList<>();
         this.redAgents = new ArrayList<>();
-        this.sb = new StringBuilder();
+        this.output = new SimulationOutput();
     }
 
     public void init(int gridSize, char flagPlacementType, int numBlueAgents, int numRedAgents, int numFlagsPerTeam, boolean coloredOutput) {
-        sb.append("[DEBUG] grid_size = ").append(gridSize).append("; flag_placement_type = ").append(flagPlacementType).append("\n");
-        sb.append("[DEBUG] num_blue_agents = ").append(numBlueAgents).append("; num_red_agents = ").append(numRedAgents).append("\n");
-        sb.append("\n");
+        output.append("[DEBUG] grid_size = ").append(gridSize).append("; flag_placement_type = ").append(flagPlacementType).append("\n");
+        output.append("[DEBUG] num_blue_agents = ").append(numBlueAgents).append("; num_red_agents = ").append(numRedAgents).append("\n");
+        output.append("\n");
+        output.markHeaderEnd();
 
         this.grid = new Grid(gridSize, coloredOutput);
         this.numFlagsPerTeam = numFlagsPerTeam;
-        grid.init();
-        grid.spawnObstacles();
-        grid.spawnFlags(flagPlacementType, this.redFlagPositions, this.blueFlagPositions, numFlagsPerTeam);
-        grid.spawnAgents(this.blueAgents, this.redAgents, numBlueAgents, numRedAgents);
+        SimulationCache.Setup setup = SimulationCache.getSetup(gridSize, flagPlacementType, numBlueAgents, numRedAgents,
+                numFlagsPerTeam);
+        if (setup != null) {
+            setup.restore(grid, this.redFlagPositions, this.blueFlagPositions, this.blueAgents, this.redAgents);
+        } else {
+            grid.init();
+            grid.spawnObstacles();
+            grid.spawnFlags(flagPlacementType, this.redFlagPositions, this.blueFlagPositions, numFlagsPerTeam);
+            grid.spawnAgents(this.blueAgents, this.redAgents, numBlueAgents, numRedAgents);
+            SimulationCache.putSetup(gridSize, flagPlacementType, numBlueAgents, numRedAgents, numFlagsPerTeam, grid,
+                    this.redFlagPositions, this.blueFlagPositions, this.blueAgents, this.redAgents);
+        }
+        this.pathFinder = ASTAR_PATHING.equals(pathing) ? new AStarPathFinder(grid) : new PathFinder(grid);
+        if (FIELD_PATHING.equals(pathing)) {
+            this.blueField = new DistanceField(grid);
+            this.redField = new DistanceField(grid);
+        }
+    }
+
+    private static String defaultPathing() {
+        String pathing = System.getenv("CAPTURETHEFLAG_PATHING");
+        return (pathing == null || pathing.isEmpty()) ? ASTAR_PATHING : pathing.toLowerCase();
+    }
+
+    /**
+     * The requested path rule, or the global default (the {@code CAPTURETHEFLAG_PATHING} environment variable, or
+     * {@code astar}) when {@code pathing} is null or empty.
+     */
+    public static String pathingOrDefault(String pathing) {
+        String name = (pathing == null || pathing.isEmpty()) ? DEFAULT_PATHING : pathing.toLowerCase();
+        if (!BFS_PATHING.equals(name) && !ASTAR_PATHING.equals(name) && !FIELD_PATHING.equals(name)) {
+            throw new IllegalArgumentException("Unknown pathing: " + name);
+        }
+        return name;
     }
 
     public void run() {
         int round = 0;
 
-        sb.append("[INFO] round = ").append(round).append("; score (blue, red) = (").append(blueScore).append(", ").append(redScore).append(")\n");
-        this.grid.printBoard(sb);
-        sb.append("\n");
+        output.append("[INFO] round = ").append(round).append("; score (blue, red) = (").append(blueScore).append(", ").append(redScore).append(")\n");
+        writeBoard();
+        output.append("\n");
+        output.markInitialBoardEnd();
 
         while (true) {
             round++;
             this.moveDetected = false;
-            moveTeam(blueAgents, blueFlagPositions);
-            moveTeam(redAgents, redFlagPositions);
+            moveTeam(blueAgents, blueFlagPositions, blueField);
+            moveTeam(redAgents, redFlagPositions, redField);
             checkDeadlock();
             //this.grid.print(round, blueScore, redScore);
             //Thread.sleep(200);
             if (checkWin()) break;
         }
 
-        this.grid.printBoard(sb);
+        writeBoard();
+        output.markFinalBoardEnd();
 
-        sb.append("[INFO] final score (blue, red) = (").append(blueScore).append(", ").append(redScore).append(")\n");
-        sb.append("[INFO] num rounds = ").append(round).append("\n");
+        output.append("[INFO] final score (blue, red) = (").append(blueScore).append(", ").append(redScore).append(")\n");
+        output.append("[INFO] num rounds = ").append(round).append("\n");
+        this.rounds = round;
+        output.trim();
+    }
+
+    private void writeBoard() {
+        try {
+            this.grid.writeBoard(output);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // the output is in memory
+        }
     }
 
     public boolean checkWin() {
@@ -87,12 +152,12 @@ public class Simulation {
                 }
             }
             if (anyFrozen) {
-                sb.append("[WARN] no possible moves for game state:").append("\n");
+                output.append("[WARN] no possible moves for game state:").append("\n");
                 for (Agent a : blueAgents) {
-                    sb.append("- blue agent @ (").append(a.x).append(",").append(a.y).append("), cooldown = ").append(a.cooldown).append("\n");
+                    output.append("- blue agent @ (").append(a.x).append(",").append(a.y).append("), cooldown = ").append(a.cooldown).append("\n");
                 }
                 for (Agent a : redAgents) {
-                    sb.append("- red agent @ (").append(a.x).append(",").append(a.y).append("), cooldown = ").append(a.cooldown).append("\n");
+                    output.append("- red agent @ (").append(a.x).append(",").append(a.y).append("), cooldown = ").append(a.cooldown).append("\n");
                 }
                 throw new RuntimeException("no possible moves");
             }
@@ -111,19 +176,33 @@ public class Simulation {
         return true;
     }
 
-    public void moveTeam(List<Agent> team, List<int[]> flagPositions) {
+    /**
+     * Moves every agent of the team one step. The field is null unless the pathing is {@code field}.
+     */
+    public void moveTeam(List<Agent> team, List<int[]> flagPositions, DistanceField field) {
+        if (field != null) {
+            field.update(flagPositions);
+        }
+        int gridSize = this.grid.getSize();
         for (Agent agent : team) {
             boolean canMove = checkCooldown(agent);
             if (!canMove) continue; // skip this agent
 
-            int[] flagPos = findNearestPosition(agent.x, agent.y, flagPositions);
-            if (flagPos == null) continue;
+            int next;
+            if (field != null) {
+                next = field.nextStep(grid.index(agent.x, agent.y));
+            } else {
+                int[] flagPos = findNearestPosition(agent.x, agent.y, flagPositions);
+                if (flagPos == null) continue;
 
-            int[] next = bfsNextStep(agent.x, agent.y, flagPos[0], flagPos[1]);
-            if (next == null || this.grid.cellHasAgent(next[0], next[1])) continue;
+                next = pathFinder.nextStep(grid.index(agent.x, agent.y), grid.index(flagPos[0], flagPos[1]));
+            }
+            if (next < 0 || this.grid.cellHasAgent(next / gridSize, next % gridSize)) continue;
 
+            int fromX = agent.x;
+            int fromY = agent.y;
             this.grid.markCellWithAgentTrace(agent.x, agent.y, agent.isBlue()); // mark agent traces
-            agent.setPosition(next[0], next[1]);
+            agent.setPosition(next / gridSize, next % gridSize);
             this.moveDetected = true;
 
             tryCaptureFlag(agent, flagPositions);
@@ -133,6 +212,14 @@ public class Simulation {
             } else {
                 this.grid.markCellWithAgent(agent.x, agent.y, agent.isBlue());
             }
+
+            if (field != null) {
+                int from = grid.index(fromX, fromY);
+                blueField.changed(from);
+                blueField.changed(next);
+                redField.changed(from);
+                redField.changed(next);
+            }
         }
     }
 
@@ -175,72 +262,21 @@ public class Simulation {
 
     public int[] bfsNextStep(int sx, int sy, int tx, int ty) {
         int gridSize = this.grid.getSize();
-        Queue<int[]> q = new LinkedList<>();
-        q.add(new int[]{sx, sy});
-        boolean[][] visited = new boolean[gridSize][gridSize];
-        visited[sx][sy] = true;
-
-        // helpers for reconstructing path and return next step
-        Map<Integer, Integer> parent = new HashMap<>();
-        int key = positionToKey(gridSize, sx, sy);
-        int value = -1;
-        parent.put(key, value);
-
-        while (!q.isEmpty()) {
-            int[] c = q.poll();
-            if (c[0] == tx && c[1] == ty) break;
-
-            for (int[] dir : DIRECTIONS) {
-                int nx = c[0] + dir[0];
-                int ny = c[1] + dir[1];
-
-                if (this.grid.inBounds(nx, ny) && !visited[nx][ny]) {
-                    // agent cannot step into cell if:
-                    // 1. there is as a flag and it is not the target one
-                    // 2. there is an agent
-                    // 3. there is an obstacle
-                    if (this.grid.cellHasFlag(nx, ny) && (nx != tx || ny != ty)
-                            || this.grid.cellHasAgent(nx, ny)
-                            || this.grid.cellHasObstacle(nx, ny))
-                        continue;
-
-                    q.add(new int[]{nx, ny});
-                    visited[nx][ny] = true;
-
-                    key = positionToKey(gridSize, nx, ny);
-                    value = positionToKey(gridSize, c[0], c[1]);
-                    parent.put(key, value);
-                }
-
-            }
-        }
-        if (!visited[tx][ty])
+        int next = pathFinder.nextStep(grid.index(sx, sy), grid.index(tx, ty));
+        if (next < 0)
             return null; // no path found
-
-        // go backwards on constructed path and extract next move
-        key = positionToKey(gridSize, tx, ty);
-        key = findRootPosition(parent, key);
-        return keyToPosition(gridSize, key);
+        return new int[]{next / gridSize, next % gridSize};
     }
 
-    private static int positionToKey(int gridSize, int x, int y) {
-        return x * gridSize + y;
+    public int getRounds() {
+        return rounds;
     }
 
-    private static int[] keyToPosition(int gridSize, int key) {
-        return new int[]{key / gridSize, key % gridSize};
-    }
-
-    private static int findRootPosition(Map<Integer, Integer> parent, int key) {
-        int p = parent.get(key);
-        while (parent.get(p) != -1) {
-            key = p;
-            p = parent.get(key);
-        }
-        return key;
+    public SimulationOutput getOutput() {
+        return output;
     }
 
     public String getData() {
-        return sb.toString();
+        return output.toString();
     }
 }
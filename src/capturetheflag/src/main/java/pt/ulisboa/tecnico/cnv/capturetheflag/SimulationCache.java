@@ -0,0 +1,166 @@
+package pt.ulisboa.tecnico.cnv.capturetheflag;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Process-wide cache of simulation setups and outputs. {@link Grid} seeds its random generator with the grid size, so
+ * the obstacles, flags and agents of a game only depend on the grid size, the flag placement type and the number of
+ * agents of each team, and so does the whole game for a given path rule. The cache is held in static fields, so warm
+ * Lambda containers reuse it across invocations as well.
+ *
+ * Setups are kept as the cells of the initial grid and the positions of its flags and agents, in spawn order, and
+ * copied into the grid of each new simulation. Outputs are kept whole, and serve every verbosity. Each kind is
+ * evicted, least recently used first, once its estimated footprint goes over {@link #MAX_SETUP_BYTES} or
+ * {@link #MAX_OUTPUT_BYTES}.
+ */
+public class SimulationCache {
+
+    public static final long MAX_SETUP_BYTES = 8L * 1024 * 1024;
+    public static final long MAX_OUTPUT_BYTES = 32L * 1024 * 1024;
+
+    /**
+     * Approximate footprint of an entry besides its cells, positions or bytes: key, map entry and objects.
+     */
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private static final Map<String, Setup> SETUPS = new LinkedHashMap<>(16, 0.75f, true);
+    private static final Map<String, SimulationOutput> OUTPUTS = new LinkedHashMap<>(16, 0.75f, true);
+    private static long setupBytes = 0;
+    private static long outputBytes = 0;
+
+    /**
+     * Initial state of a simulation: grid cells, and flags and agents as flat indices of the cells.
+     */
+    static final class Setup {
+        final byte[] cells;
+        final int[] redFlags;
+        final int[] blueFlags;
+        final int[] blueAgents;
+        final int[] redAgents;
+
+        private Setup(Grid grid, List<int[]> redFlagPositions, List<int[]> blueFlagPositions, List<Agent> blueAgents,
+                      List<Agent> redAgents) {
+            this.cells = grid.cells.clone();
+            this.redFlags = flagIndices(grid, redFlagPositions);
+            this.blueFlags = flagIndices(grid, blueFlagPositions);
+            this.blueAgents = agentIndices(grid, blueAgents);
+            this.redAgents = agentIndices(grid, redAgents);
+        }
+
+        /**
+         * Sets up the grid (of the same size), flags and agents of a new simulation.
+         */
+        void restore(Grid grid, List<int[]> redFlagPositions, List<int[]> blueFlagPositions, List<Agent> blueAgents,
+                     List<Agent> redAgents) {
+            System.arraycopy(cells, 0, grid.cells, 0, cells.length);
+            int size = grid.getSize();
+            for (int c : redFlags) {
+                redFlagPositions.add(new int[]{c / size, c % size});
+            }
+            for (int c : blueFlags) {
+                blueFlagPositions.add(new int[]{c / size, c % size});
+            }
+            for (int c : this.blueAgents) {
+                blueAgents.add(new Agent(c / size, c % size, true));
+            }
+            for (int c : this.redAgents) {
+                redAgents.add(new Agent(c / size, c % size, false));
+            }
+        }
+
+        private long footprint() {
+            return ENTRY_OVERHEAD + cells.length
+                    + 4L * (redFlags.length + blueFlags.length + blueAgents.length + redAgents.length);
+        }
+
+        private static int[] flagIndices(Grid grid, List<int[]> positions) {
+            int[] indices = new int[positions.size()];
+            for (int i = 0; i < indices.length; i++) {
+                indices[i] = grid.index(positions.get(i)[0], positions.get(i)[1]);
+            }
+            return indices;
+        }
+
+        private static int[] agentIndices(Grid grid, List<Agent> agents) {
+            int[] indices = new int[agents.size()];
+            for (int i = 0; i < indices.length; i++) {
+                indices[i] = grid.index(agents.get(i).x, agents.get(i).y);
+            }
+            return indices;
+        }
+    }
+
+    private static String setupKey(int gridSize, char flagPlacementType, int numBlueAgents, int numRedAgents,
+                                   int numFlagsPerTeam) {
+        return gridSize + ":" + flagPlacementType + ":" + numBlueAgents + ":" + numRedAgents + ":" + numFlagsPerTeam;
+    }
+
+    /**
+     * The {@code astar} and {@code bfs} path rules play the same games, so they share outputs.
+     */
+    private static String outputKey(int gridSize, char flagPlacementType, int numBlueAgents, int numRedAgents,
+                                    String pathing) {
+        String rule = Simulation.FIELD_PATHING.equals(pathing) ? Simulation.FIELD_PATHING : Simulation.ASTAR_PATHING;
+        return setupKey(gridSize, flagPlacementType, numBlueAgents, numRedAgents, gridSize / 2) + ":" + rule;
+    }
+
+    /**
+     * Returns the cached setup, or null.
+     */
+    static Setup getSetup(int gridSize, char flagPlacementType, int numBlueAgents, int numRedAgents,
+                          int numFlagsPerTeam) {
+        synchronized (SETUPS) {
+            return SETUPS.get(setupKey(gridSize, flagPlacementType, numBlueAgents, numRedAgents, numFlagsPerTeam));
+        }
+    }
+
+    /**
+     * Caches the setup of a grid that was just spawned, before any move.
+     */
+    static void putSetup(int gridSize, char flagPlacementType, int numBlueAgents, int numRedAgents,
+                         int numFlagsPerTeam, Grid grid, List<int[]> redFlagPositions, List<int[]> blueFlagPositions,
+                         List<Agent> blueAgents, List<Agent> redAgents) {
+        Setup setup = new Setup(grid, redFlagPositions, blueFlagPositions, blueAgents, redAgents);
+        synchronized (SETUPS) {
+            Setup previous = SETUPS.put(setupKey(gridSize, flagPlacementType, numBlueAgents, numRedAgents,
+                    numFlagsPerTeam), setup);
+            setupBytes += setup.footprint() - ((previous != null) ? previous.footprint() : 0);
+            Iterator<Setup> setups = SETUPS.values().iterator();
+            while (setupBytes > MAX_SETUP_BYTES && SETUPS.size() > 1) {
+                setupBytes -= setups.next().footprint();
+                setups.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the cached output of the game (without colors, with gridSize / 2 flags per team), or null.
+     */
+    public static SimulationOutput getOutput(int gridSize, char flagPlacementType, int numBlueAgents,
+                                             int numRedAgents, String pathing) {
+        synchronized (OUTPUTS) {
+            return OUTPUTS.get(outputKey(gridSize, flagPlacementType, numBlueAgents, numRedAgents, pathing));
+        }
+    }
+
+    public static void putOutput(int gridSize, char flagPlacementType, int numBlueAgents, int numRedAgents,
+                                 String pathing, SimulationOutput output) {
+        synchronized (OUTPUTS) {
+            SimulationOutput previous = OUTPUTS.put(
+                    outputKey(gridSize, flagPlacementType, numBlueAgents, numRedAgents, pathing), output);
+            outputBytes += footprint(output) - ((previous != null) ? footprint(previous) : 0);
+            Iterator<SimulationOutput> outputs = OUTPUTS.values().iterator();
+            while (outputBytes > MAX_OUTPUT_BYTES && OUTPUTS.size() > 1) {
+                outputBytes -= footprint(outputs.next());
+                outputs.remove();
+            }
+        }
+    }
+
+    private static long footprint(SimulationOutput output) {
+        return ENTRY_OVERHEAD + output.footprint();
+    }
+}
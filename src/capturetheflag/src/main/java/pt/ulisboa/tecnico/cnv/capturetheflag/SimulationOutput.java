@@ -0,0 +1,132 @@
+package pt.ulisboa.tecnico.cnv.capturetheflag;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Output of a simulation, as the ASCII bytes of the full log, with marks at the ends of its sections: the header, the
+ * initial board, and the final board, which the result lines follow. At {@code full} verbosity (the default) responses
+ * hold everything, at {@code final} the header, the final board and the result, and at {@code summary} the header and
+ * the result. They are written as slices of the same bytes, so an output cached once serves every verbosity.
+ */
+public class SimulationOutput extends OutputStream {
+
+    public static final String FULL = "full";
+    public static final String FINAL = "final";
+    public static final String SUMMARY = "summary";
+
+    private byte[] bytes = new byte[1024];
+    private int length = 0;
+
+    private int headerEnd = 0;
+    private int initialBoardEnd = 0;
+    private int finalBoardEnd = 0;
+
+    /**
+     * The requested verbosity, or {@code full} when {@code verbosity} is null or empty.
+     */
+    public static String verbosityOrDefault(String verbosity) {
+        String name = (verbosity == null || verbosity.isEmpty()) ? FULL : verbosity.toLowerCase();
+        if (!FULL.equals(name) && !FINAL.equals(name) && !SUMMARY.equals(name)) {
+            throw new IllegalArgumentException("Unknown verbosity: " + name);
+        }
+        return name;
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(1);
+        bytes[length++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(len);
+        System.arraycopy(b, off, bytes, length, len);
+        length += len;
+    }
+
+    public SimulationOutput append(String text) {
+        byte[] ascii = text.getBytes(StandardCharsets.US_ASCII);
+        write(ascii, 0, ascii.length);
+        return this;
+    }
+
+    public SimulationOutput append(int value) {
+        return append(Integer.toString(value));
+    }
+
+    public SimulationOutput append(char value) {
+        write(value);
+        return this;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, length + extra));
+        }
+    }
+
+    void markHeaderEnd() {
+        headerEnd = length;
+        initialBoardEnd = length;
+        finalBoardEnd = length;
+    }
+
+    void markInitialBoardEnd() {
+        initialBoardEnd = length;
+        finalBoardEnd = length;
+    }
+
+    void markFinalBoardEnd() {
+        finalBoardEnd = length;
+    }
+
+    /**
+     * Drops the spare capacity, once the output is complete.
+     */
+    void trim() {
+        bytes = Arrays.copyOf(bytes, length);
+    }
+
+    /**
+     * Bytes kept by the output.
+     */
+    public long footprint() {
+        return bytes.length;
+    }
+
+    /**
+     * Offset of the part of the output that follows the header at the given verbosity.
+     */
+    private int bodyStart(String verbosity) {
+        switch (verbosity) {
+            case SUMMARY: return finalBoardEnd;
+            case FINAL: return initialBoardEnd;
+            default: return headerEnd;
+        }
+    }
+
+    public int length(String verbosity) {
+        return headerEnd + (length - bodyStart(verbosity));
+    }
+
+    public void writeTo(OutputStream out, String verbosity) throws IOException {
+        out.write(bytes, 0, headerEnd);
+        int start = bodyStart(verbosity);
+        out.write(bytes, start, length - start);
+    }
+
+    public String toString(String verbosity) {
+        int start = bodyStart(verbosity);
+        return new String(bytes, 0, headerEnd, StandardCharsets.US_ASCII)
+                + new String(bytes, start, length - start, StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public String toString() {
+        return toString(FULL);
+    }
+}
@@ -0,0 +1,15 @@
+package pt.ulisboa.tecnico.cnv.capturetheflag;
+
+/**
+ * Path queries of a simulation, on the flat indices of {@link Grid#cells}.
+ */
+public interface StepFinder {
+
+    /**
+     * First step of a shortest path from source to target, or -1 if there is none. Of all the shortest paths, the step
+     * is the one of the path whose moves come first in the order of {@link Grid#DIRECTIONS}, which is the path a
+     * breadth-first search expanding neighbours in that order finds. Agents cannot step into obstacles, agents, or
+     * flags other than the target.
+     */
+    int nextStep(int source, int target);
+}
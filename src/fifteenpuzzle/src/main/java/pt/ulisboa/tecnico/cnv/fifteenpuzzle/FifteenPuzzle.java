@@ -7,6 +7,8 @@ import java.util.List;
 import java.util.Random;
 import java.util.Set;
 
+import pt.ulisboa.tecnico.cnv.fifteenpuzzle.solvers.Solution;
+
 public class FifteenPuzzle {
     private final int size;
     final int[] tiles;
@@ -54,43 +56,66 @@ public class FifteenPuzzle {
         this.displayWidth = Integer.toString(size * size).length();
     }
 
+    public int getSize() {
+        return size;
+    }
+
+    public int getBlankPos() {
+        return blankPos;
+    }
+
+    /**
+     * Copy of the tiles in row-major order, 0 being the blank.
+     */
+    public int[] getTiles() {
+        return Arrays.copyOf(tiles, tiles.length);
+    }
+
     public void shuffle(int moves, Random random) {
         int prevDir = -1; // -1 = none, 0 = up, 1 = down, 2 = left, 3 = right
     
         for (int i = 0; i < moves; i++) {
-            List<Integer> valid = new ArrayList<>();
-            int row = blankPos / size;
-            int col = blankPos % size;
-    
-            if (row > 0 && prevDir != 1) valid.add(0); // UP
-            if (row < size - 1 && prevDir != 0) valid.add(1); // DOWN
-            if (col > 0 && prevDir != 3) valid.add(2); // LEFT
-            if (col < size - 1 && prevDir != 2) valid.add(3); // RIGHT
-    
-            int dir = valid.get(random.nextInt(valid.size()));
-            int newBlankPos;
-            switch (dir) {
-                case 0: 
-                    newBlankPos = blankPos - size; // up
-                    break;
-                case 1: 
-                    newBlankPos = blankPos + size; // down
-                    break;
-                case 2: 
-                    newBlankPos = blankPos - 1; // left
-                    break;
-                case 3: 
-                    newBlankPos = blankPos + 1; // right
-                    break;
-                default: 
-                    throw new IllegalStateException();
-            }
-    
-            tiles[blankPos] = tiles[newBlankPos];
-            tiles[newBlankPos] = 0;
-            blankPos = newBlankPos;
-            prevDir = dir;
+            prevDir = shuffleMove(random, prevDir);
+        }
+    }
+
+    /**
+     * Makes one random move of a shuffle, never undoing the previous one ({@code prevDir}, -1 for none). Returns the
+     * direction moved, to pass as {@code prevDir} to the next move.
+     */
+    public int shuffleMove(Random random, int prevDir) {
+        List<Integer> valid = new ArrayList<>();
+        int row = blankPos / size;
+        int col = blankPos % size;
+
+        if (row > 0 && prevDir != 1) valid.add(0); // UP
+        if (row < size - 1 && prevDir != 0) valid.add(1); // DOWN
+        if (col > 0 && prevDir != 3) valid.add(2); // LEFT
+        if (col < size - 1 && prevDir != 2) valid.add(3); // RIGHT
+
+        int dir = valid.get(random.nextInt(valid.size()));
+        int newBlankPos;
+        switch (dir) {
+            case 0: 
+                newBlankPos = blankPos - size; // up
+                break;
+            case 1: 
+                newBlankPos = blankPos + size; // down
+                break;
+            case 2: 
+                newBlankPos = blankPos - 1; // left
+                break;
+            case 3: 
+                newBlankPos = blankPos + 1; // right
+                break;
+            default: 
+                throw new IllegalStateException();
         }
+
+        tiles[blankPos] = tiles[newBlankPos];
+        tiles[newBlankPos] = 0;
+        blankPos = newBlankPos;
+        return dir;
     }
 
     private List<Integer> validMoves(int blankPos) {
@@ -209,6 +234,12 @@ public class FifteenPuzzle {
         return puzzle;
     }
 
+    static String getSolutionData(Solution solution) {
+        if (solution == null) return "No solution found.";
+        return "\nSolution found in " + solution.getLength() + " moves"
+                + (solution.isOptimal() ? "." : " (bounded-suboptimal, not proven optimal).");
+    }
+
     static String getSolutionData(List<FifteenPuzzle> solution) {
         if (solution == null) return "No solution found.";
         return "\nSolution found in " + (solution.size() - 1) + " moves.";
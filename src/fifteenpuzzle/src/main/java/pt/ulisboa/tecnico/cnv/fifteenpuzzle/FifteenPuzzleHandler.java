@@ -8,11 +8,24 @@ import com.sun.net.httpserver.HttpHandler;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
-
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import pt.ulisboa.tecnico.cnv.fifteenpuzzle.solvers.PatternDatabases;
+import pt.ulisboa.tecnico.cnv.fifteenpuzzle.solvers.Solution;
+import pt.ulisboa.tecnico.cnv.fifteenpuzzle.solvers.Solver;
+import pt.ulisboa.tecnico.cnv.fifteenpuzzle.solvers.SolverSelector;
 import pt.ulisboa.tecnico.cnv.javassist.tools.ICount;
 import pt.ulisboa.tecnico.cnv.javassist.model.Statistics;
 
@@ -21,29 +34,199 @@ import pt.ulisboa.tecnico.cnv.storage.StorageUtil;
 public class FifteenPuzzleHandler implements HttpHandler, RequestHandler<Map<String, String>, String> {
 
     /**
-     * Solver entrypoint.
+     * Largest number of puzzles in a batch request.
+     */
+    public static final int MAX_BATCH_PUZZLES = 1000;
+
+    private static ExecutorService batchPool;
+
+    public FifteenPuzzleHandler() {
+        // Maps the pattern databases (building them on the first start) while the worker starts taking requests.
+        PatternDatabases.preload();
+    }
+
+    /**
+     * Solver entrypoint. Boards come from the shared shuffle trajectories and solutions from the
+     * {@link SolutionCache} when a request for the same size and shuffles was solved before. A deadline or weight
+     * allows a bounded-suboptimal solution, which is not cached.
      */
-    private String handleWorkload(int size, int shuffles) {
+    private String handleWorkload(int size, int shuffles, String solver, String deadline, String weight) {
         StringBuilder sb = new StringBuilder();
+        Solver puzzleSolver = SolverSelector.create(solver, deadline, weight);
 
-        FifteenPuzzle puzzle = new FifteenPuzzle(size);
-        Random random = new Random(42); // fixed seed
-        puzzle.shuffle(shuffles, random);
+        int[] tiles = ShuffleTrajectories.board(size, shuffles);
 
         sb.append("\nInitial (Shuffled) Board:").append("\n");
-        sb.append(puzzle.getData()).append("\n");
+        sb.append(FifteenPuzzle.fromArray(tiles, size).getData()).append("\n");
 
-        List<FifteenPuzzle> solution = puzzle.idaStarSolve();
+        Solution solution = solve(size, shuffles, tiles, puzzleSolver);
 
-        if (solution != null && !solution.isEmpty()) {
+        if (solution != null) {
             sb.append("\nFinal (Solved) Board:").append("\n");
-            sb.append(solution.get(solution.size() - 1).getData()).append("\n");
+            sb.append(FifteenPuzzle.fromArray(solution.apply(tiles), size).getData()).append("\n");
         }
 
         sb.append(FifteenPuzzle.getSolutionData(solution)).append("\n");
         return sb.toString();
     }
 
+    /**
+     * Cached solution of the board, or a new one from the solver (cached if optimal).
+     */
+    private static Solution solve(int size, int shuffles, int[] tiles, Solver solver) {
+        Solution solution = SolutionCache.get(size, shuffles);
+        if (solution == null) {
+            solution = solver.solve(tiles, size);
+            if (solution != null && solution.isOptimal()) {
+                SolutionCache.put(size, shuffles, solution);
+            }
+            if (solution != null) {
+                // Lets the metrics tell solved from cached requests.
+                ICount.getThreadStatistics().setSimulatedWork(solution.getExpandedNodes());
+            }
+        }
+        return solution;
+    }
+
+    /**
+     * Receives the result lines of a batch.
+     */
+    private interface LineSink {
+        void accept(String line) throws IOException;
+    }
+
+    /**
+     * Pool that solves the puzzles of batch requests, shared by all of them so that concurrent batches cannot take
+     * more than one thread per core (or {@code FIFTEENPUZZLE_PARALLELISM} threads).
+     */
+    private static synchronized ExecutorService batchPool() {
+        if (batchPool == null) {
+            String parallelism = System.getenv("FIFTEENPUZZLE_PARALLELISM");
+            batchPool = Executors.newFixedThreadPool((parallelism == null || parallelism.isEmpty())
+                    ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(parallelism), runnable -> {
+                        Thread thread = new Thread(runnable, "fifteenpuzzle-batch");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+        return batchPool;
+    }
+
+    /**
+     * Parses the {@code puzzles} parameter of a batch, a comma-separated list of {@code size:shuffles} pairs.
+     */
+    static List<int[]> parseBatch(String puzzles) {
+        if (puzzles == null || puzzles.isEmpty()) {
+            throw new IllegalArgumentException("The batch has no puzzles");
+        }
+        String[] pairs = URLDecoder.decode(puzzles, StandardCharsets.UTF_8).split(",");
+        if (pairs.length > MAX_BATCH_PUZZLES) {
+            throw new IllegalArgumentException("A batch holds at most " + MAX_BATCH_PUZZLES + " puzzles");
+        }
+        List<int[]> batch = new ArrayList<>(pairs.length);
+        for (String pair : pairs) {
+            String[] values = pair.trim().split(":");
+            if (values.length != 2) {
+                throw new IllegalArgumentException("Puzzles are size:shuffles pairs: " + pair);
+            }
+            batch.add(new int[]{Integer.parseInt(values[0]), Integer.parseInt(values[1])});
+        }
+        return batch;
+    }
+
+    /**
+     * Batch entrypoint. Solves the puzzles concurrently on the {@link #batchPool()} and passes one line per puzzle to
+     * the sink as soon as it is solved, so lines come in completion order and start with the puzzle's index in the
+     * batch. Repeated puzzles are solved once. The puzzles share the pattern databases, shuffle trajectories and
+     * solution cache. Batches are not stored as metrics, so the statistics of the pool's threads are dropped after each
+     * puzzle.
+     */
+    private void handleBatch(List<int[]> puzzles, String solver, String deadline, String weight, LineSink sink)
+            throws IOException {
+        // Rejects unknown solvers and bad parameters before any line is written.
+        SolverSelector.create(solver, deadline, weight);
+
+        Map<Long, List<Integer>> indices = new LinkedHashMap<>();
+        for (int i = 0; i < puzzles.size(); i++) {
+            int[] puzzle = puzzles.get(i);
+            indices.computeIfAbsent(((long) puzzle[0] << 32) | (puzzle[1] & 0xFFFFFFFFL), key -> new ArrayList<>())
+                    .add(i);
+        }
+
+        CompletionService<List<String>> completion = new ExecutorCompletionService<>(batchPool());
+        List<Future<List<String>>> futures = new ArrayList<>(indices.size());
+        for (List<Integer> same : indices.values()) {
+            int size = puzzles.get(same.get(0))[0];
+            int shuffles = puzzles.get(same.get(0))[1];
+            futures.add(completion.submit(() -> {
+                String result;
+                try {
+                    int[] tiles = ShuffleTrajectories.board(size, shuffles);
+                    Solution solution = solve(size, shuffles, tiles, SolverSelector.create(solver, deadline, weight));
+                    result = FifteenPuzzle.getSolutionData(solution).trim();
+                } catch (RuntimeException e) {
+                    result = "{ \"error\":\"" + e.getMessage() + "\"}";
+                } finally {
+                    ICount.clearThreadStatistics();
+                }
+                List<String> lines = new ArrayList<>(same.size());
+                for (int index : same) {
+                    lines.add(index + " size=" + size + " shuffles=" + shuffles + ": " + result);
+                }
+                return lines;
+            }));
+        }
+
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                for (String line : completion.take().get()) {
+                    sink.accept(line);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while solving the batch", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Batch puzzle failed", e.getCause());
+        } finally {
+            // Stops solving once the client is gone.
+            for (Future<List<String>> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Entrypoint for batch HTTP requests: {@code /fifteenpuzzle/batch?puzzles=4:80,5:60}, with the optional parameters
+     * of single requests applying to every puzzle. The response is streamed, one line per puzzle.
+     */
+    private void handleBatch(HttpExchange he, Map<String, String> parameters) throws IOException {
+        List<int[]> puzzles;
+        try {
+            puzzles = parseBatch(parameters.get("puzzles"));
+            SolverSelector.create(parameters.get("solver"), parameters.get("deadline"), parameters.get("weight"));
+        } catch (IllegalArgumentException e) {
+            String errorResponse = "{ \"error\":\"" + e.getMessage() + "\"}";
+            he.sendResponseHeaders(400, errorResponse.length());
+            OutputStream os = he.getResponseBody();
+            os.write(errorResponse.getBytes());
+            os.close();
+            return;
+        }
+
+        he.sendResponseHeaders(200, 0);
+        try (OutputStream os = he.getResponseBody()) {
+            handleBatch(puzzles, parameters.get("solver"), parameters.get("deadline"), parameters.get("weight"),
+                    line -> {
+                        os.write((line + "\n").getBytes());
+                        os.flush();
+                    });
+        } finally {
+            // Batches are not stored as metrics: the load balancer estimates them from their puzzles.
+            ICount.clearThreadStatistics();
+        }
+    }
+
     /**
      * Entrypoint or HTTP requests.
      */
@@ -66,11 +249,29 @@ public class FifteenPuzzleHandler implements HttpHandler, RequestHandler<Map<Str
         String query = requestedUri.getRawQuery();
         Map<String, String> parameters = queryToMap(query);
 
+        if (requestedUri.getPath().endsWith("/batch")) {
+            handleBatch(he, parameters);
+            return;
+        }
+
         int size = Integer.parseInt(parameters.get("size"));
         int shuffles = Integer.parseInt(parameters.get("shuffles"));
         boolean storeMetrics = Boolean.parseBoolean(parameters.get("storeMetrics"));
-
-        String response = handleWorkload(size, shuffles);
+        String solver = parameters.get("solver");
+        String deadline = parameters.get("deadline");
+        String weight = parameters.get("weight");
+
+        String response;
+        try {
+            response = handleWorkload(size, shuffles, solver, deadline, weight);
+        } catch (IllegalArgumentException e) {
+            String errorResponse = "{ \"error\":\"" + e.getMessage() + "\"}";
+            he.sendResponseHeaders(400, errorResponse.length());
+            OutputStream os = he.getResponseBody();
+            os.write(errorResponse.getBytes());
+            os.close();
+            return;
+        }
 
         he.sendResponseHeaders(200, response.length());
         OutputStream os = he.getResponseBody();
@@ -92,33 +293,53 @@ public class FifteenPuzzleHandler implements HttpHandler, RequestHandler<Map<Str
      */
     @Override
     public String handleRequest(Map<String, String> event, Context context) {
+        if (event.containsKey("puzzles")) {
+            // Batch: the event is {"puzzles": "4:80,5:60", ...}, and the lines are returned together.
+            StringBuilder sb = new StringBuilder();
+            try {
+                handleBatch(parseBatch(event.get("puzzles")), event.get("solver"), event.get("deadline"),
+                        event.get("weight"), line -> sb.append(line).append("\n"));
+            } catch (IllegalArgumentException | IOException e) {
+                return "{ \"error\":\"" + e.getMessage() + "\"}";
+            } finally {
+                ICount.clearThreadStatistics();
+            }
+            return sb.toString();
+        }
+
         int size = Integer.parseInt(event.get("size"));
         int shuffles = Integer.parseInt(event.get("shuffles"));
-
-        return handleWorkload(size, shuffles);
+        String solver = event.get("solver");
+        String deadline = event.get("deadline");
+        String weight = event.get("weight");
+
+        try {
+            return handleWorkload(size, shuffles, solver, deadline, weight);
+        } catch (IllegalArgumentException e) {
+            return "{ \"error\":\"" + e.getMessage() + "\"}";
+        }
     }
 
     public static void main(String[] args) {
         if (args.length < 2) {
-            System.out.println("Usage: java pt.ulisboa.tecnico.cnv.fifteenpuzzle.FifteenPuzzleHandler <size> <number_of_shuffles>");
+            System.out.println("Usage: java pt.ulisboa.tecnico.cnv.fifteenpuzzle.FifteenPuzzleHandler <size> <number_of_shuffles> [solver]");
             return;
         }
 
         int size = Integer.parseInt(args[0]);
         int shuffles = Integer.parseInt(args[1]);
 
-        FifteenPuzzle puzzle = new FifteenPuzzle(size);
-        Random random = new Random(42); // fixed seed
-        puzzle.shuffle(shuffles, random);
+        int[] tiles = ShuffleTrajectories.board(size, shuffles);
 
         System.out.println("\nInitial (Shuffled) Board:");
-        System.out.println(puzzle.getData());
+        System.out.println(FifteenPuzzle.fromArray(tiles, size).getData());
 
-        List<FifteenPuzzle> solution = puzzle.idaStarSolve();
+        String solver = (args.length > 2) ? args[2] : null;
+        Solution solution = SolverSelector.create(solver).solve(tiles, size);
 
-        if (solution != null && !solution.isEmpty()) {
+        if (solution != null) {
             System.out.println("\nFinal (Solved) Board:");
-            System.out.println(solution.get(solution.size() - 1).getData());
+            System.out.println(FifteenPuzzle.fromArray(solution.apply(tiles), size).getData());
         }
 
         System.out.println(FifteenPuzzle.getSolutionData(solution));
@@ -0,0 +1,118 @@
+package pt.ulisboa.tecnico.cnv.fifteenpuzzle;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Boards shuffled with the fixed seed of the handler. Shuffling k moves makes the first k moves of any longer shuffle,
+ * so every size keeps the longest trajectory asked for so far, as the blank positions after each move, and extends it
+ * on demand. The board for k moves is the solved board with the first k moves replayed, without drawing random
+ * numbers again. Least recently used trajectories are evicted once their estimated footprint goes over
+ * {@link #MAX_CACHED_BYTES}.
+ */
+public class ShuffleTrajectories {
+
+    public static final long SEED = 42;
+
+    /**
+     * Longest trajectory kept per size. Longer shuffles are made from scratch.
+     */
+    public static final int MAX_MOVES = 1 << 20;
+
+    public static final long MAX_CACHED_BYTES = 16L * 1024 * 1024;
+
+    /**
+     * Approximate footprint of a trajectory besides its tiles and moves: key, map entry, random generator and objects.
+     */
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private static final Map<Integer, Trajectory> TRAJECTORIES = new LinkedHashMap<>(16, 0.75f, true);
+    private static long cachedBytes = 0;
+
+    /**
+     * Trajectory of one size, with the random generator and puzzle at its end to extend it.
+     */
+    private static final class Trajectory {
+        final int size;
+        final FifteenPuzzle end;
+        final Random random = new Random(SEED);
+        int prevDir = -1;
+        int[] blankPositions = new int[64];
+        int length = 0;
+        /**
+         * Footprint last added to cachedBytes, guarded by TRAJECTORIES.
+         */
+        long counted = 0;
+
+        Trajectory(int size) {
+            this.size = size;
+            this.end = new FifteenPuzzle(size);
+        }
+
+        synchronized int[] board(int shuffles) {
+            if (shuffles > blankPositions.length) {
+                blankPositions = Arrays.copyOf(blankPositions, Math.max(shuffles, 2 * blankPositions.length));
+            }
+            while (length < shuffles) {
+                prevDir = end.shuffleMove(random, prevDir);
+                blankPositions[length++] = end.getBlankPos();
+            }
+
+            FifteenPuzzle puzzle = new FifteenPuzzle(size);
+            int[] tiles = puzzle.tiles;
+            int blank = puzzle.getBlankPos();
+            for (int i = 0; i < shuffles; i++) {
+                int next = blankPositions[i];
+                tiles[blank] = tiles[next];
+                tiles[next] = 0;
+                blank = next;
+            }
+            return tiles;
+        }
+
+        synchronized long footprint() {
+            return ENTRY_OVERHEAD + 4L * end.tiles.length + 4L * blankPositions.length;
+        }
+    }
+
+    /**
+     * Tiles of the board of the given size after the given number of shuffle moves.
+     */
+    public static int[] board(int size, int shuffles) {
+        shuffles = Math.max(0, shuffles);
+        if (shuffles > MAX_MOVES) {
+            FifteenPuzzle puzzle = new FifteenPuzzle(size);
+            puzzle.shuffle(shuffles, new Random(SEED));
+            return puzzle.getTiles();
+        }
+        Trajectory trajectory;
+        synchronized (TRAJECTORIES) {
+            trajectory = TRAJECTORIES.computeIfAbsent(size, Trajectory::new);
+        }
+        int[] tiles = trajectory.board(shuffles);
+        synchronized (TRAJECTORIES) {
+            // The trajectory may have grown, or been evicted meanwhile.
+            if (TRAJECTORIES.get(size) == trajectory) {
+                long footprint = trajectory.footprint();
+                cachedBytes += footprint - trajectory.counted;
+                trajectory.counted = footprint;
+                evict();
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * Drops the least recently used trajectories until they are within budget, keeping at least the newest one.
+     */
+    private static void evict() {
+        Iterator<Trajectory> trajectories = TRAJECTORIES.values().iterator();
+        while (cachedBytes > MAX_CACHED_BYTES && TRAJECTORIES.size() > 1) {
+            cachedBytes -= trajectories.next().counted;
+            trajectories.remove();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package pt.ulisboa.tecnico.cnv.fifteenpuzzle;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import pt.ulisboa.tecnico.cnv.fifteenpuzzle.solvers.Solution;
+
+/**
+ * Process-wide cache of optimal solutions. Boards are always shuffled with the same seed, so a solution only depends
+ * on the size and the number of shuffles, and every solver returns one of the same (optimal) length. Least recently
+ * used solutions are evicted once their estimated footprint goes over {@link #MAX_CACHED_BYTES}.
+ */
+public class SolutionCache {
+
+    public static final long MAX_CACHED_BYTES = 16L * 1024 * 1024;
+
+    /**
+     * Approximate footprint of an entry besides its moves: key, map entry and solution objects.
+     */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private static final Map<Long, Solution> SOLUTIONS = new LinkedHashMap<>(16, 0.75f, true);
+    private static long cachedBytes = 0;
+
+    private static long key(int size, int shuffles) {
+        return ((long) size << 32) | (shuffles & 0xFFFFFFFFL);
+    }
+
+    private static long footprint(Solution solution) {
+        return ENTRY_OVERHEAD + 4L * solution.getLength();
+    }
+
+    /**
+     * Returns the cached solution of the board, or null.
+     */
+    public static Solution get(int size, int shuffles) {
+        synchronized (SOLUTIONS) {
+            return SOLUTIONS.get(key(size, shuffles));
+        }
+    }
+
+    public static void put(int size, int shuffles, Solution solution) {
+        synchronized (SOLUTIONS) {
+            Solution previous = SOLUTIONS.put(key(size, shuffles), solution);
+            cachedBytes += footprint(solution) - ((previous != null) ? footprint(previous) : 0);
+            evict();
+        }
+    }
+
+    /**
+     * Drops the least recently used solutions until the cache is within budget, keeping at least the newest one.
+     */
+    private static void evict() {
+        Iterator<Solution> solutions = SOLUTIONS.values().iterator();
+        while (cachedBytes > MAX_CACHED_BYTES && SOLUTIONS.size() > 1) {
+            cachedBytes -= footprint(solutions.next());
+            solutions.remove();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package pt.ulisboa.tecnico.cnv.fifteenpuzzle;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import pt.ulisboa.tecnico.cnv.fifteenpuzzle.solvers.ParallelIdaStar;
+import pt.ulisboa.tecnico.cnv.fifteenpuzzle.solvers.Solution;
+
+/**
+ * Speed-up of the parallel solver against the number of threads, on the size/shuffles pairs of the metrics in
+ * {@code scripts/results.csv}. Every solution is checked to have the length of the single-threaded one.
+ */
+public class SolverBenchmark {
+
+    private static final Pattern PARAMETERS = Pattern.compile("\"FifteenPuzzle\",\"shuffles=(\\d+)#size=(\\d+)\"");
+
+    public static void main(String[] args) throws IOException {
+        String results = (args.length > 0) ? args[0] : "scripts/results.csv";
+        int maxThreads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int repetitions = (args.length > 2) ? Integer.parseInt(args[2]) : 3;
+
+        List<int[]> grid = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(results))) {
+            Matcher matcher = PARAMETERS.matcher(line);
+            if (matcher.find()) {
+                grid.add(new int[]{Integer.parseInt(matcher.group(2)), Integer.parseInt(matcher.group(1))});
+            }
+        }
+
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; threads < maxThreads; threads *= 2) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(maxThreads);
+
+        System.out.println("size,shuffles,threads,length,best_ms,speedup");
+        for (int[] puzzle : grid) {
+            int size = puzzle[0];
+            int shuffles = puzzle[1];
+            FifteenPuzzle board = new FifteenPuzzle(size);
+            board.shuffle(shuffles, new Random(42));
+            int[] tiles = board.getTiles();
+
+            long baseline = 0;
+            int length = -1;
+            for (int threads : threadCounts) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                long best = Long.MAX_VALUE;
+                for (int r = 0; r < repetitions; r++) {
+                    long start = System.nanoTime();
+                    Solution solution = new ParallelIdaStar(pool).solve(tiles, size);
+                    best = Math.min(best, System.nanoTime() - start);
+                    if (length < 0) {
+                        length = solution.getLength();
+                    } else if (solution.getLength() != length) {
+                        throw new IllegalStateException("Solution length differs with " + threads + " threads");
+                    }
+                }
+                pool.shutdown();
+                if (threads == 1) {
+                    baseline = best;
+                }
+                System.out.printf(Locale.ROOT, "%d,%d,%d,%d,%d,%.2f%n", size, shuffles, threads, length, best / 1_000_000,
+                        (double) baseline / best);
+            }
+        }
+    }
+}
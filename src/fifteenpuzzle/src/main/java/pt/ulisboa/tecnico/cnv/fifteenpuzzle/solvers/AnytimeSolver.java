@@ -0,0 +1,91 @@
+package pt.ulisboa.tecnico.cnv.fifteenpuzzle.solvers;
+
+/**
+ * Bounded-suboptimal solving, for requests with a deadline or a quality level. It runs weighted IDA*
+ * (f = g + w * h), whose solutions are at most w times longer than optimal.
+ *
+ * With a quality level only, a single search runs with that weight. With a deadline, searches run with decreasing
+ * weights (down to the quality level, or 1) until the deadline passes, and the shortest solution is kept. A search with
+ * weight 1 that completes proves its solution optimal. The first search always runs to completion, so that there is an
+ * answer.
+ */
+public class AnytimeSolver implements Solver {
+
+    /**
+     * Weights are rounded down to multiples of 1 / WEIGHT_SCALE, so f stays an integer.
+     */
+    private static final int WEIGHT_SCALE = 4;
+    private static final double[] SCHEDULE = {3, 2, 1.5, 1.25, 1};
+    public static final double MAX_WEIGHT = 100;
+
+    /**
+     * Nodes expanded between two reads of the clock.
+     */
+    private static final int CLOCK_INTERVAL = 1024;
+
+    private final long deadlineMillis;
+    private final double weight;
+
+    /**
+     * @param deadlineMillis time budget of the whole solve, or 0 for none.
+     * @param weight largest acceptable ratio to the optimal length, from 1 to {@link #MAX_WEIGHT}.
+     */
+    public AnytimeSolver(long deadlineMillis, double weight) {
+        if (deadlineMillis < 0) {
+            throw new IllegalArgumentException("The deadline must not be negative: " + deadlineMillis);
+        }
+        if (!(weight >= 1 && weight <= MAX_WEIGHT)) {
+            throw new IllegalArgumentException("The weight must be between 1 and " + MAX_WEIGHT + ": " + weight);
+        }
+        this.deadlineMillis = deadlineMillis;
+        this.weight = weight;
+    }
+
+    @Override
+    public Solution solve(int[] tiles, int size) {
+        if (deadlineMillis == 0) {
+            return new TimedSearch(weight, Long.MAX_VALUE).solve(tiles, size);
+        }
+
+        long deadline = System.nanoTime() + deadlineMillis * 1_000_000;
+        Solution best = null;
+        long expanded = 0;
+        for (double w : SCHEDULE) {
+            if (w < weight) {
+                // The quality level ends the schedule.
+                w = weight;
+            }
+            TimedSearch search = new TimedSearch(w, (best == null) ? Long.MAX_VALUE : deadline);
+            Solution solution = search.solve(tiles, size);
+            expanded += search.expanded;
+            if (solution != null && (best == null || solution.getLength() < best.getLength() || solution.isOptimal())) {
+                best = solution;
+            }
+            if (search.timedOut || w <= weight || (best != null && best.isOptimal())) {
+                break;
+            }
+        }
+        return (best == null) ? null : new Solution(best.getBlankPositions(), expanded, best.isOptimal());
+    }
+
+    /**
+     * Weighted IDA* that gives up once the deadline passes.
+     */
+    private static final class TimedSearch extends InPlaceIdaStar {
+        final long deadline;
+        boolean timedOut = false;
+
+        TimedSearch(double weight, long deadline) {
+            super(WEIGHT_SCALE, (int) Math.floor(weight * WEIGHT_SCALE));
+            this.deadline = deadline;
+        }
+
+        @Override
+        boolean isCancelled() {
+            if (!timedOut && (expanded % CLOCK_INTERVAL) == 0 && System.nanoTime() > deadline) {
+                timedOut = true;
+            }
+            return timedOut;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package pt.ulisboa.tecnico.cnv.fifteenpuzzle.solvers;
+
+import java.util.Arrays;
+
+/**
+ * Bidirectional breadth-first search, from the board and from the goal, one whole layer at a time on the side with
+ * the smaller frontier. The first layer that reaches a board of the other side yields an optimal solution.
+ *
+ * Boards of up to 16 cells are packed into a long with {@link CompactBoard}, and each side keeps a hash table from
+ * board to the blank position of its parent, to rebuild the path. The search gives up (returns null) once it holds
+ * more than {@code maxStates} boards.
+ */
+public class BidirectionalSearch implements Solver {
+
+    /**
+     * Approximate memory per stored board: key and parent in a half-full table, plus its frontier entry.
+     */
+    public static final int BYTES_PER_STATE = 32;
+
+    private static final byte ROOT = -1;
+    /**
+     * Returned by {@link Side#expand} when the search went over budget. Never a board, whose tiles are distinct.
+     */
+    private static final long OVER_BUDGET = -1L;
+
+    private final long maxStates;
+
+    public BidirectionalSearch(long maxStates) {
+        this.maxStates = maxStates;
+    }
+
+    @Override
+    public Solution solve(int[] tiles, int size) {
+        int cells = size * size;
+        if (!CompactBoard.fits(cells)) {
+            return null;
+        }
+        int[] neighbours = neighbours(size);
+        long start = CompactBoard.pack(tiles);
+        int[] goalTiles = new int[cells];
+        for (int p = 0; p < cells - 1; p++) {
+            goalTiles[p] = p + 1;
+        }
+        long goal = CompactBoard.pack(goalTiles);
+        if (start == goal) {
+            return new Solution(new int[0], 0);
+        }
+
+        Side forward = new Side(start, Solution.indexOf(tiles, 0));
+        Side backward = new Side(goal, cells - 1);
+        long expanded = 0;
+        while (forward.length > 0 && backward.length > 0) {
+            boolean fromStart = forward.length <= backward.length;
+            Side side = fromStart ? forward : backward;
+            Side other = fromStart ? backward : forward;
+            expanded += side.length;
+            long meeting = side.expand(other, neighbours, maxStates);
+            if (meeting == OVER_BUDGET) {
+                return null;
+            }
+            if (meeting != 0) {
+                return new Solution(path(meeting, forward, backward), expanded);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Blank positions from the start to the meeting board, then on to the goal.
+     */
+    private static int[] path(long meeting, Side forward, Side backward) {
+        int[] toMeeting = new int[64];
+        int length = 0;
+        long key = meeting;
+        int blank = CompactBoard.blank(key);
+        byte parent;
+        while ((parent = forward.table.get(key)) != ROOT) {
+            if (length == toMeeting.length) {
+                toMeeting = Arrays.copyOf(toMeeting, 2 * length);
+            }
+            toMeeting[length++] = blank;
+            key = CompactBoard.slide(key, blank, parent);
+            blank = parent;
+        }
+        int[] moves = new int[64];
+        int count = 0;
+        for (int i = length - 1; i >= 0; i--) {
+            if (count == moves.length) {
+                moves = Arrays.copyOf(moves, 2 * count);
+            }
+            moves[count++] = toMeeting[i];
+        }
+        key = meeting;
+        blank = CompactBoard.blank(key);
+        while ((parent = backward.table.get(key)) != ROOT) {
+            if (count == moves.length) {
+                moves = Arrays.copyOf(moves, 2 * count);
+            }
+            moves[count++] = parent;
+            key = CompactBoard.slide(key, blank, parent);
+            blank = parent;
+        }
+        return Arrays.copyOf(moves, count);
+    }
+
+    private static int[] neighbours(int size) {
+        int cells = size * size;
+        int[] neighbours = new int[4 * cells];
+        for (int p = 0; p < cells; p++) {
+            int row = p / size;
+            int col = p % size;
+            neighbours[4 * p] = (row > 0) ? p - size : -1;
+            neighbours[4 * p + 1] = (row < size - 1) ? p + size : -1;
+            neighbours[4 * p + 2] = (col > 0) ? p - 1 : -1;
+            neighbours[4 * p + 3] = (col < size - 1) ? p + 1 : -1;
+        }
+        return neighbours;
+    }
+
+    /**
+     * One direction of the search: the boards it reached and its last layer.
+     */
+    private static final class Side {
+        final StateTable table = new StateTable();
+        long[] frontier = new long[16];
+        byte[] blanks = new byte[16];
+        int length = 0;
+
+        Side(long root, int blank) {
+            table.put(root, ROOT);
+            frontier[0] = root;
+            blanks[0] = (byte) blank;
+            length = 1;
+        }
+
+        /**
+         * Replaces the frontier with the next layer. Returns a board of the next layer the other side has reached,
+         * {@link #OVER_BUDGET} once both sides hold more than maxStates boards, or 0.
+         */
+        long expand(Side other, int[] neighbours, long maxStates) {
+            long[] nextFrontier = new long[Math.max(16, 2 * length)];
+            byte[] nextBlanks = new byte[nextFrontier.length];
+            int nextLength = 0;
+            for (int i = 0; i < length; i++) {
+                long key = frontier[i];
+                int blank = blanks[i];
+                for (int k = 0; k < 4; k++) {
+                    int to = neighbours[4 * blank + k];
+                    if (to < 0) {
+                        continue;
+                    }
+                    long child = CompactBoard.slide(key, blank, to);
+                    if (!table.putIfAbsent(child, (byte) blank)) {
+                        continue;
+                    }
+                    if (other.table.contains(child)) {
+                        return child;
+                    }
+                    if (table.size + other.table.size > maxStates) {
+                        return OVER_BUDGET;
+                    }
+                    if (nextLength == nextFrontier.length) {
+                        nextFrontier = Arrays.copyOf(nextFrontier, 2 * nextLength);
+                        nextBlanks = Arrays.copyOf(nextBlanks, 2 * nextLength);
+                    }
+                    nextFrontier[nextLength] = child;
+                    nextBlanks[nextLength] = (byte) to;
+                    nextLength++;
+                }
+            }
+            frontier = nextFrontier;
+            blanks = nextBlanks;
+            length = nextLength;
+            return 0;
+        }
+    }
+
+    /**
+     * Open-addressing hash table from packed board (never 0) to the blank position of its parent.
+     */
+    private static final class StateTable {
+        long[] keys = new long[1024];
+        byte[] parents = new byte[1024];
+        int size = 0;
+
+        private int slot(long key) {
+            int mask = keys.length - 1;
+            int slot = (int) Zobrist.mix(key) & mask;
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        boolean contains(long key) {
+            return keys[slot(key)] != 0;
+        }
+
+        byte get(long key) {
+            return parents[slot(key)];
+        }
+
+        void put(long key, byte parent) {
+            putIfAbsent(key, parent);
+        }
+
+        /**
+         * Adds the board unless it is already there. Returns whether it was added.
+         */
+        boolean putIfAbsent(long key, byte parent) {
+            int slot = slot(key);
+            if (keys[slot] != 0) {
+                return false;
+            }
+            keys[slot] = key;
+            parents[slot] = parent;
+            if (++size > keys.length / 2) {
+                grow();
+            }
+            return true;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            byte[] oldParents = parents;
+            keys = new long[2 * oldKeys.length];
+            parents = new byte[keys.length];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = slot(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    parents[slot] = oldParents[i];
+                }
+            }
+        }
+    }
+}
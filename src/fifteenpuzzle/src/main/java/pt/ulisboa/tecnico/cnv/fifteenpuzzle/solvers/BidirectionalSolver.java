@@ -0,0 +1,59 @@
+package pt.ulisboa.tecnico.cnv.fifteenpuzzle.solvers;
+
+/**
+ * {@link BidirectionalSearch} when the boards it would store fit the memory budget of a request, the in-place IDA*
+ * otherwise (or when the bidirectional search goes over budget after all).
+ *
+ * The number of stored boards is estimated from the heuristic, a lower bound of the solution length d, as the boards
+ * within d / 2 moves of either end (capped by the number of reachable boards). The budget is set with
+ * {@code FIFTEENPUZZLE_BIDIRECTIONAL_MB} (64 MB by default, 0 never picks the bidirectional search).
+ */
+public class BidirectionalSolver implements Solver {
+
+    public static final long MAX_STATES = budgetMegabytes() * 1024 * 1024 / BidirectionalSearch.BYTES_PER_STATE;
+
+    private static long budgetMegabytes() {
+        String budget = System.getenv("FIFTEENPUZZLE_BIDIRECTIONAL_MB");
+        return (budget == null || budget.isEmpty()) ? 64 : Long.parseLong(budget);
+    }
+
+    @Override
+    public Solution solve(int[] tiles, int size) {
+        if (estimatedStates(tiles, size) <= MAX_STATES) {
+            Solution solution = new BidirectionalSearch(MAX_STATES).solve(tiles, size);
+            if (solution != null) {
+                return solution;
+            }
+        }
+        return new InPlaceIdaStar().solve(tiles, size);
+    }
+
+    /**
+     * Boards a bidirectional search of the board would store, or Long.MAX_VALUE if it cannot run on the board.
+     */
+    static long estimatedStates(int[] tiles, int size) {
+        int cells = size * size;
+        if (!CompactBoard.fits(cells)) {
+            return Long.MAX_VALUE;
+        }
+        int[] positions = new int[cells];
+        for (int p = 0; p < cells; p++) {
+            positions[tiles[p]] = p;
+        }
+        int depth = PatternDatabases.heuristic(size).estimate(tiles, positions);
+
+        // Average number of moves from a board, without undoing the previous one.
+        double branching = 3 - 4.0 / size;
+        double perSide = 0;
+        double layer = 1;
+        for (int i = 0; i <= (depth + 1) / 2; i++) {
+            perSide += layer;
+            layer *= branching;
+        }
+        double reachable = 1;
+        for (int n = 2; n <= cells; n++) {
+            reachable *= n;
+        }
+        return (long) Math.min(2 * perSide, reachable / 2);
+    }
+}
@@ -0,0 +1,100 @@
+package pt.ulisboa.tecnico.cnv.fifteenpuzzle.solvers;
+
+/**
+ * Boards of up to {@link #MAX_CELLS} cells packed into a single long, 4 bits per tile, with the tile at position p in
+ * the p-th nibble. Packed boards are compared and hashed as plain longs, e.g. in the tables of
+ * {@link BidirectionalSearch}, and are the exact {@link Zobrist} hashes of those boards.
+ *
+ * Larger boards are packed into several longs ({@link #packWords}), with the fewest bits per tile that hold the largest
+ * tile and as many whole tiles per long as fit: 6 bits and 7 longs for 8x8 boards. {@link TranspositionTable} keys
+ * those boards by their words. 3x3 and 4x4 boards, at 4 bits per tile, have the same single word in both forms.
+ */
+public final class CompactBoard {
+
+    public static final int MAX_CELLS = 16;
+
+    private CompactBoard() {
+    }
+
+    /**
+     * Whether boards with the given number of cells fit in a long.
+     */
+    public static boolean fits(int cells) {
+        return cells <= MAX_CELLS;
+    }
+
+    /**
+     * Packed board holding the given tile at the given position, and blanks everywhere else.
+     */
+    public static long tileKey(int tile, int p) {
+        return (long) tile << (4 * p);
+    }
+
+    public static long pack(int[] tiles) {
+        long board = 0;
+        for (int p = 0; p < tiles.length; p++) {
+            board |= tileKey(tiles[p], p);
+        }
+        return board;
+    }
+
+    /**
+     * Tile at position p.
+     */
+    public static int tile(long board, int p) {
+        return (int) ((board >>> (4 * p)) & 0xF);
+    }
+
+    /**
+     * Position of the blank.
+     */
+    public static int blank(long board) {
+        for (int p = 0; ; p++) {
+            if (tile(board, p) == 0) {
+                return p;
+            }
+        }
+    }
+
+    /**
+     * Board after the tile at {@code to} slides into the blank at {@code blank}.
+     */
+    public static long slide(long board, int blank, int to) {
+        long tile = tile(board, to);
+        return board ^ (tile << (4 * to)) ^ (tile << (4 * blank));
+    }
+
+    /**
+     * Bits per tile of the multi-long form of boards with the given number of cells.
+     */
+    public static int bitsPerTile(int cells) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(cells - 1));
+    }
+
+    /**
+     * Longs of the multi-long form of boards with the given number of cells.
+     */
+    public static int words(int cells) {
+        int perWord = 64 / bitsPerTile(cells);
+        return (cells + perWord - 1) / perWord;
+    }
+
+    public static long[] packWords(int[] tiles) {
+        int bits = bitsPerTile(tiles.length);
+        long[] words = new long[words(tiles.length)];
+        for (int p = 0; p < tiles.length; p++) {
+            words[p / (64 / bits)] |= (long) tiles[p] << (p % (64 / bits) * bits);
+        }
+        return words;
+    }
+
+    /**
+     * Moves a tile from {@code from} to the blank at {@code to} of a multi-long board with the given bits per tile, in
+     * place. Moving it back undoes the move.
+     */
+    public static void move(long[] words, int bits, int tile, int from, int to) {
+        int perWord = 64 / bits;
+        words[from / perWord] ^= (long) tile << (from % perWord * bits);
+        words[to / perWord] ^= (long) tile << (to % perWord * bits);
+    }
+}
@@ -0,0 +1,20 @@
+package pt.ulisboa.tecnico.cnv.fifteenpuzzle.solvers;
+
+/**
+ * Admissible estimate of the number of moves left to solve a board, updated incrementally as the search moves tiles.
+ * The estimate must be zero only for the solved board, which is how the search recognizes the goal. Implementations
+ * may keep scratch state, so an instance must only be used by one search at a time.
+ */
+public interface Heuristic {
+
+    /**
+     * Estimate of the board. {@code positions[t]} is the position of tile t.
+     */
+    int estimate(int[] board, int[] positions);
+
+    /**
+     * Estimate after the tile moved from {@code from} to {@code to}, given the estimate before the move. The board and
+     * the positions already reflect the move.
+     */
+    int update(int[] board, int[] positions, int tile, int from, int to, int previous);
+}
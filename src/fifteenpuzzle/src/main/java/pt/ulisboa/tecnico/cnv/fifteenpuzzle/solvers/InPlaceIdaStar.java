@@ -0,0 +1,226 @@
+package pt.ulisboa.tecnico.cnv.fifteenpuzzle.solvers;
+
+/**
+ * IDA* that works on a single board, making and undoing moves in place. The heuristic is updated with the single tile
+ * each move displaces, the move undoing the previous one is skipped instead of keeping a visited set, and the path is
+ * a stack of blank positions. Nothing is allocated while searching.
+ *
+ * The heuristic comes from {@link PatternDatabases#heuristic(int)}: pattern databases where available, Manhattan
+ * distance plus linear conflicts otherwise. When the worker has a {@link TranspositionTable} to spare, subtrees of
+ * boards already searched with as large a budget are skipped. The table compares whole boards, so the solution is
+ * still optimal, though not necessarily the first one in expansion order.
+ *
+ * Neighbours are expanded in the same order as {@link pt.ulisboa.tecnico.cnv.fifteenpuzzle.FifteenPuzzle#idaStarSolve()}
+ * (up, down, left, right), and the solution has the same (optimal) length.
+ */
+public class InPlaceIdaStar implements Solver {
+
+    static final int FOUND = -1;
+
+    private int size;
+    private int[] board;
+    int blank;
+    int h;
+
+    private Heuristic heuristic;
+    /**
+     * Position of tile t, kept in sync with the board.
+     */
+    private int[] positions;
+    /**
+     * Up to 4 neighbours of position p, at {@code 4 * p}, padded with -1.
+     */
+    int[] neighbours;
+    int[] path;
+    long expanded;
+
+    /**
+     * Weights of g and h in f. Equal weights give optimal solutions; a larger h weight w finds solutions at most w times
+     * longer, expanding far fewer nodes.
+     */
+    private final int gWeight;
+    private final int hWeight;
+
+    /**
+     * Transposition table of this search, if one was available, the hash of the board, its multi-long form if the hash
+     * is not exact, and the number of the current threshold iteration.
+     */
+    private TranspositionTable table;
+    private Zobrist zobrist;
+    private long hash;
+    private long[] packed;
+    private int bits;
+    private int iteration;
+
+    public InPlaceIdaStar() {
+        this(1, 1);
+    }
+
+    /**
+     * Weighted IDA*, with f = gWeight * g + hWeight * h.
+     */
+    public InPlaceIdaStar(int gWeight, int hWeight) {
+        this.gWeight = gWeight;
+        this.hWeight = hWeight;
+    }
+
+    @Override
+    public Solution solve(int[] tiles, int size) {
+        init(tiles, size);
+        table = TranspositionTable.acquire(tiles.length);
+        try {
+            if (table != null) {
+                zobrist = Zobrist.forSize(size);
+                hash = zobrist.hash(board);
+                if (!zobrist.isExact()) {
+                    bits = CompactBoard.bitsPerTile(tiles.length);
+                    packed = CompactBoard.packWords(board);
+                }
+            }
+            return iterate();
+        } finally {
+            TranspositionTable.release(table);
+            table = null;
+            packed = null;
+        }
+    }
+
+    private Solution iterate() {
+        int threshold = hWeight * h;
+        for (iteration = 0; ; iteration++) {
+            // Moves are only made from nodes with f <= threshold, so at most threshold / gWeight of them.
+            path = new int[threshold / gWeight + 1];
+            int result = search(0, threshold, -1);
+            if (result == FOUND) {
+                int length = 0;
+                while (length < path.length && path[length] >= 0) {
+                    length++;
+                }
+                int[] moves = new int[length];
+                System.arraycopy(path, 0, moves, 0, length);
+                return new Solution(moves, expanded, gWeight == hWeight);
+            }
+            if (result == Integer.MAX_VALUE) {
+                return null;
+            }
+            threshold = result;
+        }
+    }
+
+    void init(int[] tiles, int size) {
+        int cells = size * size;
+        this.size = size;
+        this.board = tiles.clone();
+        this.blank = Solution.indexOf(board, 0);
+        this.expanded = 0;
+
+        positions = new int[cells];
+        for (int p = 0; p < cells; p++) {
+            positions[board[p]] = p;
+        }
+        neighbours = new int[4 * cells];
+        for (int p = 0; p < cells; p++) {
+            int row = p / size;
+            int col = p % size;
+            neighbours[4 * p] = (row > 0) ? p - size : -1;
+            neighbours[4 * p + 1] = (row < size - 1) ? p + size : -1;
+            neighbours[4 * p + 2] = (col > 0) ? p - 1 : -1;
+            neighbours[4 * p + 3] = (col < size - 1) ? p + 1 : -1;
+        }
+
+        heuristic = PatternDatabases.heuristic(size);
+        h = heuristic.estimate(board, positions);
+    }
+
+    /**
+     * Slides the tile at {@code to} into the blank.
+     */
+    void move(int to) {
+        int from = blank;
+        int tile = board[to];
+        board[from] = tile;
+        board[to] = 0;
+        positions[tile] = from;
+        blank = to;
+        h = heuristic.update(board, positions, tile, to, from, h);
+    }
+
+    /**
+     * Whether the search should give up, checked before expanding each node.
+     */
+    boolean isCancelled() {
+        return false;
+    }
+
+    /**
+     * Depth-first search below the current board, reached in g moves with the blank coming from {@code previous}.
+     * Returns {@link #FOUND} or the smallest f above the threshold.
+     */
+    int search(int g, int threshold, int previous) {
+        int f = gWeight * g + hWeight * h;
+        if (f > threshold) {
+            return f;
+        }
+        if (h == 0) {
+            // Marks the end of the path.
+            if (g < path.length) {
+                path[g] = -1;
+            }
+            return FOUND;
+        }
+        if (isCancelled()) {
+            return Integer.MAX_VALUE;
+        }
+        if (table != null && table.prune(hash, packed, g, iteration)) {
+            return Integer.MAX_VALUE;
+        }
+        expanded++;
+
+        int from = blank;
+        int min = Integer.MAX_VALUE;
+        for (int k = 0; k < 4; k++) {
+            int to = neighbours[4 * from + k];
+            if (to < 0 || to == previous) {
+                continue;
+            }
+            // Make: the tile at `to` slides into the blank.
+            int tile = board[to];
+            int before = h;
+            board[from] = tile;
+            board[to] = 0;
+            positions[tile] = from;
+            blank = to;
+            h = heuristic.update(board, positions, tile, to, from, before);
+            if (table != null) {
+                hash = zobrist.update(hash, tile, to, from);
+                if (packed != null) {
+                    CompactBoard.move(packed, bits, tile, to, from);
+                }
+            }
+            path[g] = to;
+
+            int result = search(g + 1, threshold, from);
+
+            // Undo.
+            h = before;
+            if (table != null) {
+                hash = zobrist.update(hash, tile, from, to);
+                if (packed != null) {
+                    CompactBoard.move(packed, bits, tile, from, to);
+                }
+            }
+            blank = from;
+            positions[tile] = to;
+            board[to] = tile;
+            board[from] = 0;
+
+            if (result == FOUND) {
+                return FOUND;
+            }
+            if (result < min) {
+                min = result;
+            }
+        }
+        return min;
+    }
+}
@@ -0,0 +1,107 @@
+package pt.ulisboa.tecnico.cnv.fifteenpuzzle.solvers;
+
+/**
+ * Manhattan distance plus linear conflicts: when tiles of a row (column) belong to that row (column) but are in the
+ * wrong order, some of them must leave the line and come back, which costs two extra moves each. The number of tiles
+ * that must leave is the line length minus the longest run of tiles already in order (longest increasing
+ * subsequence), which keeps the estimate admissible.
+ *
+ * A move only changes the conflicts of the goal line of the tile it displaces, so only that line is recomputed.
+ */
+public class LinearConflictHeuristic extends ManhattanHeuristic {
+
+    /**
+     * Scratch arrays, so that computing a line allocates nothing.
+     */
+    private final int[] line;
+    private final int[] tails;
+
+    public LinearConflictHeuristic(int size) {
+        super(size);
+        this.line = new int[size];
+        this.tails = new int[size];
+    }
+
+    @Override
+    public int estimate(int[] board, int[] positions) {
+        int sum = super.estimate(board, positions);
+        for (int i = 0; i < size; i++) {
+            sum += rowConflicts(board, i) + columnConflicts(board, i);
+        }
+        return sum;
+    }
+
+    @Override
+    public int update(int[] board, int[] positions, int tile, int from, int to, int previous) {
+        int h = super.update(board, positions, tile, from, to, previous);
+        // Only tiles in their goal line take part in its conflicts, so a tile moving between two other lines changes
+        // none. Otherwise only its goal line is recomputed, with the board swapped back to get the value before.
+        int line;
+        boolean row = (from % size) == (to % size);
+        if (row) {
+            line = (tile - 1) / size;
+            if (from / size != line && to / size != line) {
+                return h;
+            }
+        } else {
+            line = (tile - 1) % size;
+            if (from % size != line && to % size != line) {
+                return h;
+            }
+        }
+        int after = row ? rowConflicts(board, line) : columnConflicts(board, line);
+        board[from] = tile;
+        board[to] = 0;
+        int before = row ? rowConflicts(board, line) : columnConflicts(board, line);
+        board[to] = tile;
+        board[from] = 0;
+        return h + after - before;
+    }
+
+    private int rowConflicts(int[] board, int row) {
+        int count = 0;
+        for (int col = 0; col < size; col++) {
+            int tile = board[row * size + col];
+            if (tile != 0 && (tile - 1) / size == row) {
+                line[count++] = (tile - 1) % size;
+            }
+        }
+        return 2 * (count - longestIncreasing(count));
+    }
+
+    private int columnConflicts(int[] board, int col) {
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            int tile = board[row * size + col];
+            if (tile != 0 && (tile - 1) % size == col) {
+                line[count++] = (tile - 1) / size;
+            }
+        }
+        return 2 * (count - longestIncreasing(count));
+    }
+
+    /**
+     * Length of the longest strictly increasing subsequence of the first n values of the line.
+     */
+    private int longestIncreasing(int n) {
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            int value = line[i];
+            int lo = 0;
+            int hi = length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (tails[mid] < value) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            tails[lo] = value;
+            if (lo == length) {
+                length++;
+            }
+        }
+        return length;
+    }
+}
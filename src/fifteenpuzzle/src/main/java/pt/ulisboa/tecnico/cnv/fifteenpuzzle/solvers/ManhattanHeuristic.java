@@ -0,0 +1,39 @@
+package pt.ulisboa.tecnico.cnv.fifteenpuzzle.solvers;
+
+/**
+ * Sum of the Manhattan distances of the tiles to their goal positions.
+ */
+public class ManhattanHeuristic implements Heuristic {
+
+    final int size;
+    final int cells;
+    /**
+     * Distance of tile t at position p, at {@code t * cells + p}.
+     */
+    private final int[] distances;
+
+    public ManhattanHeuristic(int size) {
+        this.size = size;
+        this.cells = size * size;
+        this.distances = new int[cells * cells];
+        for (int t = 1; t < cells; t++) {
+            for (int p = 0; p < cells; p++) {
+                distances[t * cells + p] = Math.abs(p / size - (t - 1) / size) + Math.abs(p % size - (t - 1) % size);
+            }
+        }
+    }
+
+    @Override
+    public int estimate(int[] board, int[] positions) {
+        int sum = 0;
+        for (int t = 1; t < cells; t++) {
+            sum += distances[t * cells + positions[t]];
+        }
+        return sum;
+    }
+
+    @Override
+    public int update(int[] board, int[] positions, int tile, int from, int to, int previous) {
+        return previous + distances[tile * cells + to] - distances[tile * cells + from];
+    }
+}
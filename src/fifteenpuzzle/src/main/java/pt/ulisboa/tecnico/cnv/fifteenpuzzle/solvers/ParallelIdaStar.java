@@ -0,0 +1,242 @@
+package pt.ulisboa.tecnico.cnv.fifteenpuzzle.solvers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import pt.ulisboa.tecnico.cnv.javassist.model.Statistics;
+import pt.ulisboa.tecnico.cnv.javassist.tools.ICount;
+
+/**
+ * IDA* split over a fork/join pool. For each threshold the tree is expanded on the calling thread down to
+ * {@link #FRONTIER_DEPTH} moves, and the subtrees below that frontier are searched by the pool's (work-stealing)
+ * threads, each with its own copy of the board.
+ *
+ * Frontier nodes are numbered in the order {@link InPlaceIdaStar} visits them. When a subtree finds the goal, the
+ * subtrees after it are cancelled and the ones before it finish, so the solution is the first optimal one in expansion
+ * order, the one {@link InPlaceIdaStar} returns without a transposition table. The instructions run by the pool's
+ * threads are added to the requesting thread's statistics.
+ */
+public class ParallelIdaStar implements Solver {
+
+    static final int FRONTIER_DEPTH = 8;
+
+    private static ForkJoinPool sharedPool;
+
+    private final ForkJoinPool pool;
+
+    public ParallelIdaStar(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Pool shared by the requests, with one thread per core unless {@code FIFTEENPUZZLE_PARALLELISM} says otherwise.
+     */
+    static synchronized ForkJoinPool sharedPool() {
+        if (sharedPool == null) {
+            String parallelism = System.getenv("FIFTEENPUZZLE_PARALLELISM");
+            sharedPool = new ForkJoinPool((parallelism == null || parallelism.isEmpty())
+                    ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(parallelism));
+        }
+        return sharedPool;
+    }
+
+    @Override
+    public Solution solve(int[] tiles, int size) {
+        Statistics statistics = ICount.getThreadStatistics();
+        Map<Long, Worker> workers = new ConcurrentHashMap<>();
+        InPlaceIdaStar root = new InPlaceIdaStar();
+        root.init(tiles, size);
+        int threshold = root.h;
+        long expanded = 0;
+        while (true) {
+            List<int[]> frontier = new ArrayList<>();
+            root.path = new int[Math.max(threshold, FRONTIER_DEPTH)];
+            int min = expand(root, 0, threshold, -1, frontier);
+            if (min == InPlaceIdaStar.FOUND) {
+                return new Solution(trim(root.path), expanded + root.expanded);
+            }
+
+            Iteration iteration = new Iteration(tiles, size, root.blank, threshold, frontier, workers, statistics);
+            pool.invoke(iteration);
+            expanded += iteration.expanded.sum();
+            int found = iteration.foundIndex.get();
+            if (found != Integer.MAX_VALUE) {
+                return new Solution(trim(iteration.paths[found]), expanded + root.expanded);
+            }
+            for (int result : iteration.results) {
+                min = Math.min(min, result);
+            }
+            if (min == Integer.MAX_VALUE) {
+                return null;
+            }
+            threshold = min;
+        }
+    }
+
+    /**
+     * Collects the frontier below the current board, in search order. Returns {@link InPlaceIdaStar#FOUND} if the goal
+     * is above the frontier, or the smallest f above the threshold.
+     */
+    private static int expand(InPlaceIdaStar root, int g, int threshold, int previous, List<int[]> frontier) {
+        int f = g + root.h;
+        if (f > threshold) {
+            return f;
+        }
+        if (root.h == 0) {
+            if (g < root.path.length) {
+                root.path[g] = -1;
+            }
+            return InPlaceIdaStar.FOUND;
+        }
+        if (g == FRONTIER_DEPTH) {
+            frontier.add(Arrays.copyOf(root.path, g));
+            return Integer.MAX_VALUE;
+        }
+        root.expanded++;
+
+        int from = root.blank;
+        int min = Integer.MAX_VALUE;
+        for (int k = 0; k < 4; k++) {
+            int to = root.neighbours[4 * from + k];
+            if (to < 0 || to == previous) {
+                continue;
+            }
+            root.path[g] = to;
+            root.move(to);
+            int result = expand(root, g + 1, threshold, from, frontier);
+            root.move(from);
+            if (result == InPlaceIdaStar.FOUND) {
+                return InPlaceIdaStar.FOUND;
+            }
+            min = Math.min(min, result);
+        }
+        return min;
+    }
+
+    private static int[] trim(int[] path) {
+        int length = 0;
+        while (length < path.length && path[length] >= 0) {
+            length++;
+        }
+        return Arrays.copyOf(path, length);
+    }
+
+    /**
+     * One threshold: searches every frontier subtree.
+     */
+    private static final class Iteration extends RecursiveAction {
+        final int[] tiles;
+        final int size;
+        final int rootBlank;
+        final int threshold;
+        final List<int[]> frontier;
+        final Map<Long, Worker> workers;
+        final Statistics statistics;
+
+        /**
+         * Lowest frontier index whose subtree holds the goal.
+         */
+        final AtomicInteger foundIndex = new AtomicInteger(Integer.MAX_VALUE);
+        final int[] results;
+        final int[][] paths;
+        final LongAdder expanded = new LongAdder();
+
+        Iteration(int[] tiles, int size, int rootBlank, int threshold, List<int[]> frontier, Map<Long, Worker> workers,
+                  Statistics statistics) {
+            this.tiles = tiles;
+            this.size = size;
+            this.rootBlank = rootBlank;
+            this.threshold = threshold;
+            this.frontier = frontier;
+            this.workers = workers;
+            this.statistics = statistics;
+            this.results = new int[frontier.size()];
+            this.paths = new int[frontier.size()][];
+            Arrays.fill(results, Integer.MAX_VALUE);
+        }
+
+        @Override
+        protected void compute() {
+            List<Subtree> subtrees = new ArrayList<>(frontier.size());
+            for (int i = 0; i < frontier.size(); i++) {
+                subtrees.add(new Subtree(this, i));
+            }
+            invokeAll(subtrees);
+        }
+    }
+
+    /**
+     * Search of the subtree below one frontier node.
+     */
+    private static final class Subtree extends RecursiveAction {
+        final Iteration iteration;
+        final int index;
+
+        Subtree(Iteration iteration, int index) {
+            this.iteration = iteration;
+            this.index = index;
+        }
+
+        @Override
+        protected void compute() {
+            if (iteration.foundIndex.get() < index) {
+                return;
+            }
+            Worker worker = iteration.workers.computeIfAbsent(Thread.currentThread().getId(), id -> new Worker());
+            if (worker.iteration == null) {
+                worker.init(iteration.tiles, iteration.size);
+            }
+            int[] prefix = iteration.frontier.get(index);
+            worker.iteration = iteration;
+            worker.index = index;
+            worker.expanded = 0;
+            worker.path = new int[iteration.threshold];
+            System.arraycopy(prefix, 0, worker.path, 0, prefix.length);
+            for (int to : prefix) {
+                worker.move(to);
+            }
+
+            int previous = (prefix.length >= 2) ? prefix[prefix.length - 2] : iteration.rootBlank;
+            int result = worker.search(prefix.length, iteration.threshold, previous);
+
+            for (int i = prefix.length - 2; i >= 0; i--) {
+                worker.move(prefix[i]);
+            }
+            worker.move(iteration.rootBlank);
+
+            iteration.results[index] = result;
+            iteration.expanded.add(worker.expanded);
+            if (result == InPlaceIdaStar.FOUND) {
+                iteration.paths[index] = worker.path;
+                iteration.foundIndex.accumulateAndGet(index, Math::min);
+            }
+
+            Statistics own = ICount.getThreadStatistics();
+            if (own != iteration.statistics) {
+                iteration.statistics.add(own);
+                ICount.clearThreadStatistics();
+            }
+        }
+    }
+
+    /**
+     * Searcher of one pool thread, reused across the subtrees it runs. Gives up once a subtree before its own has
+     * found the goal.
+     */
+    private static final class Worker extends InPlaceIdaStar {
+        Iteration iteration;
+        int index;
+
+        @Override
+        boolean isCancelled() {
+            return iteration.foundIndex.get() < index;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package pt.ulisboa.tecnico.cnv.fifteenpuzzle.solvers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Additive pattern database for a group of tiles: the least number of moves of those tiles needed to bring them home,
+ * with the other tiles indistinguishable and free to move. Every move slides a single tile, so the values of disjoint
+ * groups can be added and the sum stays admissible.
+ *
+ * The table has one byte per placement of the group's tiles, indexed by the rank of their positions as a partial
+ * permutation of the cells. It is built with a breadth-first search from the goal over (group positions, blank
+ * position) states, where moving the blank over a tile outside the group costs nothing. States are packed with 4 bits
+ * per position, so databases are limited to boards of up to 16 cells.
+ */
+public final class PatternDatabase {
+
+    public static final int MAX_CELLS = 16;
+
+    private static final int UNSET = 0xFF;
+
+    private final int size;
+    private final int[] tiles;
+    private final int[] multipliers;
+    private final ByteBuffer table;
+
+    private PatternDatabase(int size, int[] tiles, ByteBuffer table) {
+        this.size = size;
+        this.tiles = tiles.clone();
+        this.multipliers = multipliers(size * size, tiles.length);
+        this.table = table;
+    }
+
+    public int[] getTiles() {
+        return tiles.clone();
+    }
+
+    /**
+     * Moves needed by the group, given the position of every tile ({@code positions[t]}).
+     */
+    int lookup(int[] positions) {
+        int rank = 0;
+        for (int i = 0; i < tiles.length; i++) {
+            int p = positions[tiles[i]];
+            int c = p;
+            for (int j = 0; j < i; j++) {
+                if (positions[tiles[j]] < p) {
+                    c--;
+                }
+            }
+            rank += c * multipliers[i];
+        }
+        return table.get(rank) & 0xFF;
+    }
+
+    /**
+     * Memory-maps the database from {@code file}, building and writing it first if the file does not exist.
+     */
+    public static PatternDatabase load(int size, int[] tiles, Path file) throws IOException {
+        int entries = count(size * size, tiles.length);
+        if (!Files.exists(file) || Files.size(file) != entries) {
+            byte[] table = build(size, tiles);
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            // Written aside and moved, so that a concurrent or interrupted build never leaves a partial file behind.
+            Path partial = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                Files.write(partial, table);
+                Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(partial);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new PatternDatabase(size, tiles, channel.map(FileChannel.MapMode.READ_ONLY, 0, entries));
+        }
+    }
+
+    /**
+     * Builds the table of the group of tiles on a board of the given size.
+     */
+    static byte[] build(int size, int[] tiles) {
+        int cells = size * size;
+        int k = tiles.length;
+        if (cells > MAX_CELLS || k + 1 > cells) {
+            throw new IllegalArgumentException("No pattern database for " + k + " tiles on a " + size + "x" + size + " board");
+        }
+        int[] patternMultipliers = multipliers(cells, k);
+        int[] stateMultipliers = multipliers(cells, k + 1);
+        int states = count(cells, k + 1);
+        byte[] table = new byte[count(cells, k)];
+        Arrays.fill(table, (byte) UNSET);
+
+        // Closed states have their final distance. Queued states are already in the next layer.
+        long[] closed = new long[(states + 63) >>> 6];
+        long[] queued = new long[(states + 63) >>> 6];
+        IntStack current = new IntStack();
+        IntStack next = new IntStack();
+
+        int[] pos = new int[k + 1];
+        for (int i = 0; i < k; i++) {
+            pos[i] = tiles[i] - 1;
+        }
+        pos[k] = cells - 1;
+        current.push(pack(pos));
+
+        for (int depth = 0; !current.isEmpty(); depth++) {
+            while (!current.isEmpty()) {
+                unpack(current.pop(), pos);
+                int rank = rank(pos, k + 1, stateMultipliers);
+                if (isSet(closed, rank)) {
+                    continue;
+                }
+                set(closed, rank);
+                int patternRank = rank(pos, k, patternMultipliers);
+                if ((table[patternRank] & 0xFF) == UNSET) {
+                    table[patternRank] = (byte) depth;
+                }
+
+                int blank = pos[k];
+                int row = blank / size;
+                int col = blank % size;
+                for (int d = 0; d < 4; d++) {
+                    int to;
+                    if (d == 0) {
+                        to = (row > 0) ? blank - size : -1;
+                    } else if (d == 1) {
+                        to = (row < size - 1) ? blank + size : -1;
+                    } else if (d == 2) {
+                        to = (col > 0) ? blank - 1 : -1;
+                    } else {
+                        to = (col < size - 1) ? blank + 1 : -1;
+                    }
+                    if (to < 0) {
+                        continue;
+                    }
+                    int slot = -1;
+                    for (int i = 0; i < k; i++) {
+                        if (pos[i] == to) {
+                            slot = i;
+                            break;
+                        }
+                    }
+                    pos[k] = to;
+                    if (slot < 0) {
+                        // The blank swaps with a tile outside the group, for free.
+                        if (!isSet(closed, rank(pos, k + 1, stateMultipliers))) {
+                            current.push(pack(pos));
+                        }
+                    } else {
+                        pos[slot] = blank;
+                        int neighbour = rank(pos, k + 1, stateMultipliers);
+                        if (!isSet(closed, neighbour) && !isSet(queued, neighbour)) {
+                            set(queued, neighbour);
+                            next.push(pack(pos));
+                        }
+                        pos[slot] = to;
+                    }
+                    pos[k] = blank;
+                }
+            }
+            IntStack swap = current;
+            current = next;
+            next = swap;
+            Arrays.fill(queued, 0L);
+        }
+        return table;
+    }
+
+    /**
+     * Number of placements of k distinguishable items on n cells.
+     */
+    static int count(int n, int k) {
+        long count = 1;
+        for (int i = 0; i < k; i++) {
+            count *= n - i;
+        }
+        if (count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Pattern database too large: " + count + " entries");
+        }
+        return (int) count;
+    }
+
+    /**
+     * Weight of the i-th position in the rank of a placement of k items on n cells.
+     */
+    private static int[] multipliers(int n, int k) {
+        int[] multipliers = new int[k];
+        for (int i = 0; i < k; i++) {
+            multipliers[i] = count(n - 1 - i, k - 1 - i);
+        }
+        return multipliers;
+    }
+
+    private static int rank(int[] pos, int k, int[] multipliers) {
+        int rank = 0;
+        for (int i = 0; i < k; i++) {
+            int c = pos[i];
+            for (int j = 0; j < i; j++) {
+                if (pos[j] < pos[i]) {
+                    c--;
+                }
+            }
+            rank += c * multipliers[i];
+        }
+        return rank;
+    }
+
+    private static int pack(int[] pos) {
+        int packed = 0;
+        for (int i = pos.length - 1; i >= 0; i--) {
+            packed = (packed << 4) | pos[i];
+        }
+        return packed;
+    }
+
+    private static void unpack(int packed, int[] pos) {
+        for (int i = 0; i < pos.length; i++) {
+            pos[i] = packed & 0xF;
+            packed >>>= 4;
+        }
+    }
+
+    private static boolean isSet(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static void set(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    /**
+     * Growable stack of packed states.
+     */
+    private static final class IntStack {
+        private int[] items = new int[1024];
+        private int length = 0;
+
+        void push(int item) {
+            if (length == items.length) {
+                items = Arrays.copyOf(items, items.length * 2);
+            }
+            items[length++] = item;
+        }
+
+        int pop() {
+            return items[--length];
+        }
+
+        boolean isEmpty() {
+            return length == 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return size + "x" + size + " " + Arrays.toString(tiles);
+    }
+}
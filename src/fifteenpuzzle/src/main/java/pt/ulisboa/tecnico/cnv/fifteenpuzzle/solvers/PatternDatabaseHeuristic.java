@@ -0,0 +1,46 @@
+package pt.ulisboa.tecnico.cnv.fifteenpuzzle.solvers;
+
+/**
+ * Sum of disjoint additive pattern databases. A move only displaces one tile, so only the database of its group is
+ * looked up again.
+ */
+public class PatternDatabaseHeuristic implements Heuristic {
+
+    private final PatternDatabase[] databases;
+    /**
+     * Database holding tile t, or null if t is in no group.
+     */
+    private final PatternDatabase[] groupOf;
+
+    public PatternDatabaseHeuristic(int size, PatternDatabase[] databases) {
+        this.databases = databases;
+        this.groupOf = new PatternDatabase[size * size];
+        for (PatternDatabase database : databases) {
+            for (int tile : database.getTiles()) {
+                groupOf[tile] = database;
+            }
+        }
+    }
+
+    @Override
+    public int estimate(int[] board, int[] positions) {
+        int sum = 0;
+        for (PatternDatabase database : databases) {
+            sum += database.lookup(positions);
+        }
+        return sum;
+    }
+
+    @Override
+    public int update(int[] board, int[] positions, int tile, int from, int to, int previous) {
+        PatternDatabase database = groupOf[tile];
+        if (database == null) {
+            return previous;
+        }
+        int after = database.lookup(positions);
+        positions[tile] = from;
+        int before = database.lookup(positions);
+        positions[tile] = to;
+        return previous + after - before;
+    }
+}
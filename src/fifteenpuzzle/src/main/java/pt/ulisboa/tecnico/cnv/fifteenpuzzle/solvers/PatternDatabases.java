@@ -0,0 +1,111 @@
+package pt.ulisboa.tecnico.cnv.fifteenpuzzle.solvers;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pattern databases of the board sizes small enough to have them, and the heuristic to use for each size.
+ *
+ * Databases are stored under the {@code FIFTEENPUZZLE_PDB_DIR} directory (the temporary directory by default). They
+ * are built the first time they are needed and memory-mapped afterwards, in the background when a worker starts (see
+ * {@link #preload()}). Until the databases of a size are loaded its requests use Manhattan distance plus linear
+ * conflicts, which yields the same optimal solutions with more expanded nodes.
+ */
+public class PatternDatabases {
+
+    /**
+     * Disjoint groups of tiles per board size: 4-4 for the 8-puzzle and 6-6-3 for the 15-puzzle.
+     */
+    private static final Map<Integer, int[][]> PARTITIONS = new HashMap<>();
+
+    static {
+        PARTITIONS.put(3, new int[][]{{1, 2, 3, 4}, {5, 6, 7, 8}});
+        PARTITIONS.put(4, new int[][]{{1, 5, 6, 9, 10, 13}, {7, 8, 11, 12, 14, 15}, {2, 3, 4}});
+    }
+
+    private static final Map<Integer, PatternDatabase[]> LOADED = new ConcurrentHashMap<>();
+
+    private static Thread loader;
+
+    private static Path directory() {
+        String directory = System.getenv("FIFTEENPUZZLE_PDB_DIR");
+        if (directory == null || directory.isEmpty()) {
+            return Paths.get(System.getProperty("java.io.tmpdir"), "fifteenpuzzle-pdb");
+        }
+        return Paths.get(directory);
+    }
+
+    /**
+     * Loads (building them if needed) the databases of every size on a background thread. Only the first call has an
+     * effect.
+     */
+    public static synchronized void preload() {
+        if (loader != null) {
+            return;
+        }
+        loader = new Thread(() -> {
+            for (int size : PARTITIONS.keySet()) {
+                try {
+                    load(size);
+                } catch (IOException e) {
+                    System.err.println("Could not load the " + size + "x" + size + " pattern databases: " + e.getMessage());
+                }
+            }
+        }, "pattern-database-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Loads the databases of a size, building and writing them first if their files do not exist.
+     */
+    public static PatternDatabase[] load(int size) throws IOException {
+        PatternDatabase[] databases = LOADED.get(size);
+        int[][] partition = PARTITIONS.get(size);
+        if (databases != null || partition == null) {
+            return databases;
+        }
+        databases = new PatternDatabase[partition.length];
+        for (int i = 0; i < partition.length; i++) {
+            databases[i] = PatternDatabase.load(size, partition[i], directory().resolve(fileName(size, partition[i])));
+        }
+        LOADED.put(size, databases);
+        return databases;
+    }
+
+    private static String fileName(int size, int[] tiles) {
+        StringBuilder sb = new StringBuilder("pdb-").append(size).append('x').append(size);
+        for (int tile : tiles) {
+            sb.append('-').append(tile);
+        }
+        return sb.append(".bin").toString();
+    }
+
+    /**
+     * Heuristic for a board of the given size: the pattern databases once loaded, Manhattan distance plus linear
+     * conflicts otherwise. The heuristic is not thread-safe, so each search needs its own.
+     */
+    public static Heuristic heuristic(int size) {
+        PatternDatabase[] databases = LOADED.get(size);
+        if (databases != null) {
+            return new PatternDatabaseHeuristic(size, databases);
+        }
+        return new LinearConflictHeuristic(size);
+    }
+
+    /**
+     * Builds the database files ahead of time, e.g. when preparing a worker image.
+     */
+    public static void main(String[] args) throws IOException {
+        for (int size : PARTITIONS.keySet()) {
+            long start = System.nanoTime();
+            load(size);
+            System.out.println(size + "x" + size + " pattern databases ready in " + directory() + " ("
+                    + (System.nanoTime() - start) / 1_000_000 + " ms)");
+        }
+    }
+}
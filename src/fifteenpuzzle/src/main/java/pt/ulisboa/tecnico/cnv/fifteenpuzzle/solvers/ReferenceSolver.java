@@ -0,0 +1,25 @@
+package pt.ulisboa.tecnico.cnv.fifteenpuzzle.solvers;
+
+import java.util.List;
+
+import pt.ulisboa.tecnico.cnv.fifteenpuzzle.FifteenPuzzle;
+
+/**
+ * The original solver, {@link FifteenPuzzle#idaStarSolve()}.
+ */
+public class ReferenceSolver implements Solver {
+
+    @Override
+    public Solution solve(int[] tiles, int size) {
+        List<FifteenPuzzle> steps = new FifteenPuzzle(tiles, Solution.indexOf(tiles, 0), size).idaStarSolve();
+        if (steps == null) {
+            return null;
+        }
+        int[] moves = new int[steps.size() - 1];
+        for (int i = 1; i < steps.size(); i++) {
+            moves[i - 1] = steps.get(i).getBlankPos();
+        }
+        // The reference solver does not count its nodes.
+        return new Solution(moves, 0);
+    }
+}
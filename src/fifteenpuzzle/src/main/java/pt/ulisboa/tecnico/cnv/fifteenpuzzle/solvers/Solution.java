@@ -0,0 +1,66 @@
+package pt.ulisboa.tecnico.cnv.fifteenpuzzle.solvers;
+
+/**
+ * Solution of a board, as the positions the blank moves to, one per move.
+ */
+public final class Solution {
+
+    private final int[] blankPositions;
+    private final long expandedNodes;
+    private final boolean optimal;
+
+    public Solution(int[] blankPositions, long expandedNodes) {
+        this(blankPositions, expandedNodes, true);
+    }
+
+    public Solution(int[] blankPositions, long expandedNodes, boolean optimal) {
+        this.blankPositions = blankPositions;
+        this.expandedNodes = expandedNodes;
+        this.optimal = optimal;
+    }
+
+    public int getLength() {
+        return blankPositions.length;
+    }
+
+    public int[] getBlankPositions() {
+        return blankPositions.clone();
+    }
+
+    /**
+     * Number of nodes the search expanded.
+     */
+    public long getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    /**
+     * Whether the solution is known to be optimal, which bounded-suboptimal searches do not guarantee.
+     */
+    public boolean isOptimal() {
+        return optimal;
+    }
+
+    /**
+     * Applies the moves of the solution to a copy of the board.
+     */
+    public int[] apply(int[] tiles) {
+        int[] board = tiles.clone();
+        int blank = indexOf(board, 0);
+        for (int next : blankPositions) {
+            board[blank] = board[next];
+            board[next] = 0;
+            blank = next;
+        }
+        return board;
+    }
+
+    static int indexOf(int[] tiles, int tile) {
+        for (int i = 0; i < tiles.length; i++) {
+            if (tiles[i] == tile) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Tile " + tile + " is not on the board");
+    }
+}
@@ -0,0 +1,13 @@
+package pt.ulisboa.tecnico.cnv.fifteenpuzzle.solvers;
+
+/**
+ * Common interface of the puzzle solvers.
+ */
+public interface Solver {
+
+    /**
+     * Solves the board (tiles in row-major order, 0 being the blank), which is left unchanged. Returns null if the
+     * board has no solution.
+     */
+    Solution solve(int[] tiles, int size);
+}
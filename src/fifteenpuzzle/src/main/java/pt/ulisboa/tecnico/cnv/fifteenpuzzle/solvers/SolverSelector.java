@@ -0,0 +1,68 @@
+package pt.ulisboa.tecnico.cnv.fifteenpuzzle.solvers;
+
+/**
+ * Builds the solver for a request. The solver can be chosen per request (the {@code solver} parameter) or globally
+ * through the {@code FIFTEENPUZZLE_SOLVER} environment variable. Requests with a {@code deadline} (milliseconds) or a
+ * {@code weight} (largest acceptable ratio to the optimal length) get the bounded-suboptimal {@link AnytimeSolver}
+ * instead, but their {@code solver} must still be a known one.
+ */
+public class SolverSelector {
+
+    public static final String REFERENCE = "reference";
+    public static final String IDASTAR = "idastar";
+    public static final String PARALLEL = "parallel";
+    public static final String BIDIRECTIONAL = "bidirectional";
+
+    private static final String DEFAULT_SOLVER = defaultSolver();
+
+    private static String defaultSolver() {
+        String solver = System.getenv("FIFTEENPUZZLE_SOLVER");
+        return (solver == null || solver.isEmpty()) ? IDASTAR : solver.toLowerCase();
+    }
+
+    /**
+     * Creates the solver for the request parameters, which may be null.
+     */
+    public static Solver create(String solver, String deadline, String weight) {
+        boolean hasDeadline = deadline != null && !deadline.isEmpty();
+        boolean hasWeight = weight != null && !weight.isEmpty();
+        if (!hasDeadline && !hasWeight) {
+            return create(solver);
+        }
+        name(solver);
+        try {
+            return new AnytimeSolver(hasDeadline ? Long.parseLong(deadline) : 0,
+                    hasWeight ? Double.parseDouble(weight) : 1);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid deadline or weight: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the requested solver, falling back to the global default when {@code solver} is null or empty.
+     */
+    public static Solver create(String solver) {
+        switch (name(solver)) {
+            case REFERENCE: return new ReferenceSolver();
+            case PARALLEL: return new ParallelIdaStar(ParallelIdaStar.sharedPool());
+            case BIDIRECTIONAL: return new BidirectionalSolver();
+            default: return new InPlaceIdaStar();
+        }
+    }
+
+    /**
+     * Name of the requested solver, or of the global default when {@code solver} is null or empty.
+     */
+    private static String name(String solver) {
+        String name = (solver == null || solver.isEmpty()) ? DEFAULT_SOLVER : solver.toLowerCase();
+        switch (name) {
+            case REFERENCE:
+            case IDASTAR:
+            case PARALLEL:
+            case BIDIRECTIONAL:
+                return name;
+            default:
+                throw new IllegalArgumentException("Unknown 15-puzzle solver: " + name);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package pt.ulisboa.tecnico.cnv.fifteenpuzzle.solvers;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Fixed-size open-addressing table of the smallest number of moves (g) each board was reached with. Boards of up to 16
+ * cells are keyed by their {@link Zobrist} hash, which is the exact packed board; larger ones by their multi-long
+ * {@link CompactBoard} form, which the random hash of those boards only places in the table. Hits therefore always
+ * compare the whole board, and a hash collision never skips a subtree. IDA* uses it to skip subtrees it has already searched, or will search, with at least as large
+ * a budget:
+ *
+ * - a board reached again in the same threshold iteration with the same or a larger g was already searched from its
+ *   first visit;
+ * - a board reached with a larger g than in an earlier iteration will be reached again through that shorter path in
+ *   this one, since thresholds only grow.
+ *
+ * Each entry takes (search, iteration, g) and the key, two longs for 4x4 boards and 8 for 8x8 ones, and is looked for
+ * in {@link #PROBES} consecutive slots; when none is free, the entry of the oldest iteration with the largest g is
+ * replaced. Tables are lent to searches from a pool bounded by the {@code FIFTEENPUZZLE_TT_MB} budget of the worker (64
+ * MB by default, 0 turns them off), and searches that find the pool empty run without one. Entries of other searches
+ * count as free slots, so tables are only cleared when lent to a search whose keys have another length.
+ */
+public final class TranspositionTable {
+
+    public static final int TABLE_BYTES = 16 * 1024 * 1024;
+    private static final int PROBES = 4;
+
+    private static final int MAX_TABLES = (int) (budgetMegabytes() * 1024 * 1024 / TABLE_BYTES);
+    private static final Deque<TranspositionTable> FREE = new ArrayDeque<>();
+    private static int created = 0;
+    private static int searches = 0;
+
+    private final long[] entries = new long[TABLE_BYTES / 8];
+    /**
+     * Longs per entry, and one less than the number of slots.
+     */
+    private int stride;
+    private int mask;
+    private int search;
+
+    private TranspositionTable() {
+    }
+
+    private static long budgetMegabytes() {
+        String budget = System.getenv("FIFTEENPUZZLE_TT_MB");
+        return (budget == null || budget.isEmpty()) ? 64 : Long.parseLong(budget);
+    }
+
+    /**
+     * Lends a table to a new search of boards with the given number of cells, or returns null if the budget is in use.
+     */
+    public static synchronized TranspositionTable acquire(int cells) {
+        TranspositionTable table = FREE.poll();
+        if (table == null) {
+            if (created >= MAX_TABLES) {
+                return null;
+            }
+            table = new TranspositionTable();
+            created++;
+        }
+        // Never 0, which is the search of slots that were never written.
+        searches = (searches == Integer.MAX_VALUE) ? 1 : searches + 1;
+        table.search = searches;
+        table.keyed(CompactBoard.fits(cells) ? 1 : CompactBoard.words(cells));
+        return table;
+    }
+
+    public static synchronized void release(TranspositionTable table) {
+        if (table != null) {
+            FREE.push(table);
+        }
+    }
+
+    private void keyed(int keyWords) {
+        if (stride != keyWords + 1) {
+            Arrays.fill(entries, 0);
+            stride = keyWords + 1;
+            mask = Integer.highestOneBit(entries.length / stride) - 1;
+        }
+    }
+
+    /**
+     * Whether the subtree of the board with the given hash, reached in g moves in the given threshold iteration (0 for
+     * the first one), can be skipped. If not, records the visit. Boards of more than 16 cells also pass their
+     * {@link CompactBoard#packWords multi-long form}, the others null.
+     */
+    public boolean prune(long hash, long[] board, int g, int iteration) {
+        int base = (int) Zobrist.mix(hash) & mask;
+        int victim = -1;
+        long victimScore = -1;
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (base + i) & mask;
+            long data = entries[stride * slot];
+            if ((int) (data >>> 32) != search) {
+                if (victimScore != Long.MAX_VALUE) {
+                    victim = slot;
+                    victimScore = Long.MAX_VALUE;
+                }
+                continue;
+            }
+            int storedG = (int) (data & 0xFFFF);
+            int storedIteration = (int) ((data >>> 16) & 0xFFFF);
+            if (matches(stride * slot + 1, hash, board)) {
+                if (storedG < g || (storedG == g && storedIteration == iteration)) {
+                    return true;
+                }
+                entries[stride * slot] = pack(g, iteration);
+                return false;
+            }
+            long score = ((long) (iteration - storedIteration) << 16) + storedG;
+            if (score > victimScore) {
+                victim = slot;
+                victimScore = score;
+            }
+        }
+        entries[stride * victim] = pack(g, iteration);
+        if (board == null) {
+            entries[stride * victim + 1] = hash;
+        } else {
+            System.arraycopy(board, 0, entries, stride * victim + 1, board.length);
+        }
+        return false;
+    }
+
+    private boolean matches(int key, long hash, long[] board) {
+        if (board == null) {
+            return entries[key] == hash;
+        }
+        for (int w = 0; w < board.length; w++) {
+            if (entries[key + w] != board[w]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long pack(int g, int iteration) {
+        return ((long) search << 32) | ((long) (iteration & 0xFFFF) << 16) | (g & 0xFFFF);
+    }
+}
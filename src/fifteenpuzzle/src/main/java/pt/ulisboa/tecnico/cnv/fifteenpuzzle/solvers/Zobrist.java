@@ -0,0 +1,72 @@
+package pt.ulisboa.tecnico.cnv.fifteenpuzzle.solvers;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Zobrist keys: the hash of a board is the XOR of the keys of its (tile, position) pairs, so a move updates it with two
+ * XORs. On boards of up to 16 cells the key of tile t at position p is t shifted to the p-th nibble, which makes the
+ * hash the exact {@link CompactBoard} packed board rather than a fingerprint.
+ */
+public final class Zobrist {
+
+    private static final Map<Integer, Zobrist> KEYS = new ConcurrentHashMap<>();
+
+    private final int cells;
+    /**
+     * Key of tile t at position p, at {@code t * cells + p}. The blank has no key.
+     */
+    private final long[] keys;
+
+    /**
+     * Keys of the given board size, shared by every search.
+     */
+    public static Zobrist forSize(int size) {
+        return KEYS.computeIfAbsent(size, Zobrist::new);
+    }
+
+    private Zobrist(int size) {
+        this.cells = size * size;
+        this.keys = new long[cells * cells];
+        SplittableRandom random = new SplittableRandom(size);
+        for (int t = 1; t < cells; t++) {
+            for (int p = 0; p < cells; p++) {
+                keys[t * cells + p] = isExact() ? CompactBoard.tileKey(t, p) : random.nextLong();
+            }
+        }
+    }
+
+    /**
+     * Whether hashes are packed boards, so equal hashes always mean equal boards.
+     */
+    public boolean isExact() {
+        return CompactBoard.fits(cells);
+    }
+
+    public long hash(int[] board) {
+        long hash = 0;
+        for (int p = 0; p < cells; p++) {
+            if (board[p] != 0) {
+                hash ^= keys[board[p] * cells + p];
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Hash after the tile moved from {@code from} to {@code to}.
+     */
+    public long update(long hash, int tile, int from, int to) {
+        return hash ^ keys[tile * cells + from] ^ keys[tile * cells + to];
+    }
+
+    /**
+     * Scrambles the bits of a value (the finalizer of SplitMix64), to index tables with exact hashes.
+     */
+    public static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,182 @@
+package pt.ulisboa.tecnico.cnv.gameoflife;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide store of simulated grids, keyed by map and generation, so that a request for N iterations resumes from
+ * the latest checkpoint at or below N instead of generation 0.
+ *
+ * Checkpoints are taken on a geometric schedule ({@link #FIRST_CHECKPOINT}, twice that, four times that...), so a map
+ * never holds more than about 30 of them. Grids are stored one bit per cell, which is lossless from the first
+ * generation on (every cell is 0 or 1). Least recently used checkpoints are evicted once the store goes over
+ * {@link #MAX_BYTES}.
+ */
+public class CheckpointStore {
+
+    /**
+     * Must be a power of two.
+     */
+    public static final int FIRST_CHECKPOINT = 16;
+    public static final long MAX_BYTES = 64L * 1024 * 1024;
+
+    private static final Map<Key, Checkpoint> CHECKPOINTS = new LinkedHashMap<>(16, 0.75f, true);
+    private static final Map<String, TreeMap<Integer, Checkpoint>> BY_MAP = new HashMap<>();
+    private static long storedBytes = 0;
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private static final class Key {
+        final String map;
+        final int generation;
+
+        Key(String map, int generation) {
+            this.map = map;
+            this.generation = generation;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key that = (Key) o;
+            return generation == that.generation && map.equals(that.map);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(map, generation);
+        }
+    }
+
+    /**
+     * Grid of a map at a given generation, one bit per cell.
+     */
+    public static final class Checkpoint {
+        private final int generation;
+        private final long[] bits;
+        private final int size;
+
+        private Checkpoint(int generation, byte[] cells) {
+            this.generation = generation;
+            this.size = cells.length;
+            this.bits = new long[(size + 63) >>> 6];
+            for (int i = 0; i < size; i++) {
+                if (cells[i] != 0) {
+                    bits[i >>> 6] |= 1L << (i & 63);
+                }
+            }
+        }
+
+        public int getGeneration() {
+            return generation;
+        }
+
+        /**
+         * A new grid holding the cells of the checkpoint.
+         */
+        public byte[] restore() {
+            byte[] cells = new byte[size];
+            for (int i = 0; i < size; i++) {
+                cells[i] = (byte) ((bits[i >>> 6] >>> (i & 63)) & 1L);
+            }
+            return cells;
+        }
+
+        private long getBytes() {
+            return 8L * bits.length;
+        }
+    }
+
+    /**
+     * Whether a grid reached at the given generation should be stored.
+     */
+    public static boolean isScheduled(int generation) {
+        return generation >= FIRST_CHECKPOINT && Integer.bitCount(generation) == 1;
+    }
+
+    /**
+     * First scheduled generation after the given one.
+     */
+    public static long nextScheduled(int generation) {
+        long next = FIRST_CHECKPOINT;
+        while (next <= generation) {
+            next <<= 1;
+        }
+        return next;
+    }
+
+    /**
+     * Latest checkpoint of the map at or below the given generation, or null if there is none.
+     */
+    public static Checkpoint latest(String map, int generation) {
+        Checkpoint checkpoint = null;
+        synchronized (CHECKPOINTS) {
+            TreeMap<Integer, Checkpoint> checkpoints = BY_MAP.get(map);
+            Map.Entry<Integer, Checkpoint> entry = (checkpoints != null) ? checkpoints.floorEntry(generation) : null;
+            if (entry != null) {
+                checkpoint = entry.getValue();
+                // Refreshes its position in the eviction order.
+                CHECKPOINTS.get(new Key(map, entry.getKey()));
+            }
+        }
+        (checkpoint != null ? hits : misses).incrementAndGet();
+        return checkpoint;
+    }
+
+    /**
+     * Stores the grid of the map at the given generation, if that generation is on the schedule.
+     */
+    public static void store(String map, int generation, byte[] cells) {
+        if (map == null || !isScheduled(generation)) {
+            return;
+        }
+        Checkpoint checkpoint = new Checkpoint(generation, cells);
+        synchronized (CHECKPOINTS) {
+            Checkpoint previous = CHECKPOINTS.put(new Key(map, generation), checkpoint);
+            BY_MAP.computeIfAbsent(map, k -> new TreeMap<>()).put(generation, checkpoint);
+            storedBytes += checkpoint.getBytes() - ((previous != null) ? previous.getBytes() : 0);
+            evict();
+        }
+    }
+
+    private static void evict() {
+        Iterator<Map.Entry<Key, Checkpoint>> entries = CHECKPOINTS.entrySet().iterator();
+        while (storedBytes > MAX_BYTES && entries.hasNext()) {
+            Map.Entry<Key, Checkpoint> eldest = entries.next();
+            entries.remove();
+            storedBytes -= eldest.getValue().getBytes();
+            TreeMap<Integer, Checkpoint> checkpoints = BY_MAP.get(eldest.getKey().map);
+            checkpoints.remove(eldest.getKey().generation);
+            if (checkpoints.isEmpty()) {
+                BY_MAP.remove(eldest.getKey().map);
+            }
+        }
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    public static int getEntries() {
+        synchronized (CHECKPOINTS) {
+            return CHECKPOINTS.size();
+        }
+    }
+
+    public static long getStoredBytes() {
+        synchronized (CHECKPOINTS) {
+            return storedBytes;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package pt.ulisboa.tecnico.cnv.gameoflife;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import pt.ulisboa.tecnico.cnv.gameoflife.engines.BitPackedGameOfLife;
+import pt.ulisboa.tecnico.cnv.gameoflife.engines.EngineSelector;
+import pt.ulisboa.tecnico.cnv.gameoflife.engines.GameOfLifeEngine;
+import pt.ulisboa.tecnico.cnv.gameoflife.engines.SparseGameOfLife;
+
+/**
+ * Compares the raw engines (without cycle detection) on maps of growing size: sparse maps, with a few gliders and
+ * blinkers scattered over an empty grid, and random soups. Every engine's output is checked against the reference
+ * engine. The vector engine is included when the JVM runs with {@code --add-modules jdk.incubator.vector}.
+ */
+public class EngineBenchmark {
+
+    private interface EngineFactory {
+        GameOfLifeEngine create(int width, int height, byte[] data);
+    }
+
+    private static final int[][] GLIDER = {{0, 1}, {1, 2}, {2, 0}, {2, 1}, {2, 2}};
+    private static final int[][] BLINKER = {{1, 0}, {1, 1}, {1, 2}};
+
+    /**
+     * Cells per pattern on the benchmark maps.
+     */
+    private static final int PATTERN_AREA = 128 * 128;
+
+    public static void main(String[] args) {
+        int iterations = (args.length > 0) ? Integer.parseInt(args[0]) : 500;
+        int repetitions = (args.length > 1) ? Integer.parseInt(args[1]) : 3;
+        int maxSide = (args.length > 2) ? Integer.parseInt(args[2]) : 1024;
+
+        Map<String, EngineFactory> engines = new LinkedHashMap<>();
+        engines.put("scalar", GameOfLife::new);
+        engines.put("bitpacked", BitPackedGameOfLife::new);
+        engines.put("sparse", SparseGameOfLife::new);
+        if (EngineSelector.isVectorAvailable()) {
+            engines.put("vector", EngineSelector::createVector);
+        }
+
+        System.out.println("map,side,engine,iterations,best_ms");
+        for (String kind : new String[]{"sparse", "random"}) {
+            for (int side = 64; side <= maxSide; side *= 2) {
+                Random random = new Random(side);
+                byte[] map = "sparse".equals(kind) ? sparseMap(side, random) : randomMap(side, random);
+                run(kind, side, map, engines, iterations, repetitions);
+            }
+        }
+    }
+
+    private static void run(String kind, int side, byte[] map, Map<String, EngineFactory> engines, int iterations,
+                            int repetitions) {
+        byte[] expected = null;
+        for (Map.Entry<String, EngineFactory> engine : engines.entrySet()) {
+            long best = Long.MAX_VALUE;
+            byte[] result = null;
+            for (int r = 0; r < repetitions; r++) {
+                result = Arrays.copyOf(map, map.length);
+                GameOfLifeEngine gol = engine.getValue().create(side, side, result);
+                long start = System.nanoTime();
+                gol.play(iterations);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            if (expected == null) {
+                expected = result;
+            } else if (!Arrays.equals(expected, result)) {
+                throw new IllegalStateException(engine.getKey() + " differs from the reference engine");
+            }
+            System.out.println(kind + "," + side + "," + engine.getKey() + "," + iterations + "," + (best / 1_000_000));
+        }
+    }
+
+    /**
+     * One glider or blinker per {@link #PATTERN_AREA} cells, placed at random.
+     */
+    private static byte[] sparseMap(int side, Random random) {
+        byte[] map = new byte[side * side];
+        int patterns = Math.max(1, side * side / PATTERN_AREA);
+        for (int p = 0; p < patterns; p++) {
+            int[][] pattern = random.nextBoolean() ? GLIDER : BLINKER;
+            int x0 = random.nextInt(side - 3);
+            int y0 = random.nextInt(side - 3);
+            for (int[] cell : pattern) {
+                map[(y0 + cell[0]) * side + x0 + cell[1]] = 1;
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Random soup with 30% of the cells alive.
+     */
+    private static byte[] randomMap(int side, Random random) {
+        byte[] map = new byte[side * side];
+        for (int i = 0; i < map.length; i++) {
+            map[i] = (byte) (random.nextInt(10) < 3 ? 1 : 0);
+        }
+        return map;
+    }
+}
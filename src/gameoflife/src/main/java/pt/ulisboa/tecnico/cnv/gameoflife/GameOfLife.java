@@ -2,11 +2,13 @@ package pt.ulisboa.tecnico.cnv.gameoflife;
 
 import java.io.IOException;
 
+import pt.ulisboa.tecnico.cnv.gameoflife.engines.GameOfLifeEngine;
+
 /**
  * Inspired by: https://www.algosome.com/articles/conway-game-of-life-2d.html
  * Read more details and rules here: https://en.wikipedia.org/wiki/Conway%27s_Game_of_Life
  */
-public class GameOfLife {
+public class GameOfLife implements GameOfLifeEngine {
 
     private final static byte ALIVE = 1;
     private final static byte DEAD = 0;
@@ -18,6 +20,7 @@ public class GameOfLife {
      * Data representing the grid in 1d format. Specified as byte to allow for multiple phases.
      */
     private byte[] data;
+    private long simulatedGenerations = 0;
 
     /**
      * Constructs a new Game of Life with the specified dimensions.
@@ -29,10 +32,12 @@ public class GameOfLife {
         this.data = data;
     }
 
+    @Override
     public void play(int iterations) {
         for (int i = 0; i < iterations; i++) {
             iterate();
         }
+        simulatedGenerations += Math.max(0, iterations);
     }
 
     public void playCLI(int iterations) {
@@ -107,7 +112,13 @@ public class GameOfLife {
         return sb.toString().replace("1", " +").replace("0", " -"); // You can also use ⬛ ⬜.
     }
 
+    @Override
     public byte[] getData() {
         return data;
     }
+
+    @Override
+    public long getSimulatedGenerations() {
+        return simulatedGenerations;
+    }
 }
@@ -0,0 +1,229 @@
+package pt.ulisboa.tecnico.cnv.gameoflife;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import pt.ulisboa.tecnico.cnv.gameoflife.engines.EngineSelector;
+import pt.ulisboa.tecnico.cnv.gameoflife.engines.GameOfLifeEngine;
+
+/**
+ * Merges concurrent requests for the same map (and engine) into a single simulation, run up to the largest requested
+ * generation. Every request gets a copy of the grid as soon as its generation is reached.
+ *
+ * The simulation has no thread of its own: it is run by one of the waiting request threads, the leader, so that its
+ * instructions are counted in the metrics of a request. Once the leader's own generation is reached, it hands the
+ * simulation over to the request with the next generation and returns. A request for a generation the running
+ * simulation is already past is run on its own.
+ *
+ * Simulations resume from, and fill, the {@link CheckpointStore}.
+ */
+public class GameOfLifeBatcher {
+
+    private static final Map<String, Batch> BATCHES = new HashMap<>();
+
+    /**
+     * Output of a request and the generations simulated by its thread (0 if another request computed them).
+     */
+    public static final class Result {
+        private final byte[] outputMap;
+        private final long simulatedGenerations;
+
+        private Result(byte[] outputMap, long simulatedGenerations) {
+            this.outputMap = outputMap;
+            this.simulatedGenerations = simulatedGenerations;
+        }
+
+        public byte[] getOutputMap() {
+            return outputMap;
+        }
+
+        public long getSimulatedGenerations() {
+            return simulatedGenerations;
+        }
+    }
+
+    /**
+     * A request waiting for its generation, or for its turn to lead the simulation.
+     */
+    private static final class Ticket {
+        final int target;
+        byte[] result;
+        RuntimeException error;
+        boolean lead;
+        long simulatedGenerations = 0;
+
+        Ticket(int target) {
+            this.target = target;
+        }
+
+        synchronized void complete(byte[] result) {
+            this.result = result;
+            notifyAll();
+        }
+
+        synchronized void fail(RuntimeException error) {
+            this.error = error;
+            notifyAll();
+        }
+
+        synchronized void promote() {
+            this.lead = true;
+            notifyAll();
+        }
+
+        synchronized void await() {
+            boolean interrupted = false;
+            while (result == null && error == null && !lead) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    // The simulation may be waiting for us to lead it, so keep waiting.
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized boolean isDone() {
+            return result != null || error != null;
+        }
+    }
+
+    /**
+     * One simulation, shared by the requests waiting on it. The engine is only used by the current leader; everything
+     * else is guarded by BATCHES.
+     */
+    private static final class Batch {
+        final String key;
+        final String mapFilename;
+        final GameOfLifeEngine gol;
+        final TreeMap<Integer, List<Ticket>> pending = new TreeMap<>();
+        int generation;
+        /**
+         * Generation the leader is currently simulating up to; requests for an earlier one cannot join.
+         */
+        int committed;
+
+        Batch(String key, String mapFilename, GameOfLifeMap inputMap, int target, String engine) {
+            this.key = key;
+            this.mapFilename = mapFilename;
+            CheckpointStore.Checkpoint checkpoint = CheckpointStore.latest(mapFilename, target);
+            this.generation = (checkpoint != null) ? checkpoint.getGeneration() : 0;
+            this.committed = generation;
+            byte[] cells = (checkpoint != null) ? checkpoint.restore() : inputMap.copyCells();
+            this.gol = EngineSelector.create(engine, inputMap.getWidth(), inputMap.getHeight(), cells);
+        }
+
+        void add(Ticket ticket) {
+            pending.computeIfAbsent(ticket.target, k -> new ArrayList<>()).add(ticket);
+        }
+
+        /**
+         * Runs the simulation until the ticket's generation is reached, then hands it over to the next request.
+         */
+        void lead(Ticket self) {
+            long simulatedBefore = gol.getSimulatedGenerations();
+            try {
+                while (true) {
+                    int end;
+                    synchronized (BATCHES) {
+                        List<Ticket> reached = pending.remove(generation);
+                        if (reached != null) {
+                            for (Ticket ticket : reached) {
+                                ticket.complete(gol.getData().clone());
+                            }
+                        }
+                        if (pending.isEmpty()) {
+                            if (BATCHES.get(key) == this) {
+                                BATCHES.remove(key);
+                            }
+                            return;
+                        }
+                        if (self.isDone()) {
+                            pending.firstEntry().getValue().get(0).promote();
+                            return;
+                        }
+                        end = (int) Math.min(pending.firstKey(), CheckpointStore.nextScheduled(generation));
+                        committed = end;
+                        // The run is split at checkpoints, but engines pick their algorithm for the whole of it.
+                        gol.plan(pending.lastKey() - generation);
+                    }
+                    gol.play(end - generation);
+                    generation = end;
+                    CheckpointStore.store(mapFilename, generation, gol.getData());
+                }
+            } catch (Throwable e) {
+                // Errors too (e.g. out of memory), or the waiting requests and those joining later would hang.
+                RuntimeException error = (e instanceof RuntimeException) ? (RuntimeException) e
+                        : new IllegalStateException("Game of Life simulation failed: " + e, e);
+                synchronized (BATCHES) {
+                    if (BATCHES.get(key) == this) {
+                        BATCHES.remove(key);
+                    }
+                    for (List<Ticket> tickets : pending.values()) {
+                        for (Ticket ticket : tickets) {
+                            ticket.fail(error);
+                        }
+                    }
+                    pending.clear();
+                }
+                throw e;
+            } finally {
+                self.simulatedGenerations += gol.getSimulatedGenerations() - simulatedBefore;
+            }
+        }
+    }
+
+    /**
+     * Adds the ticket to the running batch of the key if it can still reach the ticket's generation. Otherwise, the
+     * ticket leads the given new batch, which is registered for the key if none is running, or null is returned if
+     * there is no new batch.
+     */
+    private static Batch join(String key, Ticket ticket, Batch created) {
+        synchronized (BATCHES) {
+            Batch batch = BATCHES.get(key);
+            if (batch == null || ticket.target < batch.committed) {
+                if (created == null) {
+                    return null;
+                }
+                if (batch == null) {
+                    BATCHES.put(key, created);
+                }
+                batch = created;
+                ticket.lead = true;
+            }
+            batch.add(ticket);
+            return batch;
+        }
+    }
+
+    /**
+     * Simulates the map for the given number of iterations, possibly together with other requests for the same map.
+     */
+    public static Result play(String mapFilename, GameOfLifeMap inputMap, int iterations, String engine) {
+        String key = mapFilename + "\n" + ((engine == null) ? "" : engine.toLowerCase());
+        Ticket ticket = new Ticket(Math.max(0, iterations));
+        Batch batch = join(key, ticket, null);
+        if (batch == null) {
+            // Restoring the checkpoint and building the engine (for HashLife, a whole quadtree) is done outside the
+            // lock, which every request of every map goes through.
+            batch = join(key, ticket, new Batch(key, mapFilename, inputMap, ticket.target, engine));
+        }
+
+        while (!ticket.isDone()) {
+            ticket.await();
+            if (ticket.lead && !ticket.isDone()) {
+                batch.lead(ticket);
+            }
+        }
+        if (ticket.error != null) {
+            throw ticket.error;
+        }
+        return new Result(ticket.result, ticket.simulatedGenerations);
+    }
+}
@@ -1,20 +1,20 @@
 package pt.ulisboa.tecnico.cnv.gameoflife;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpExchange;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 
+import pt.ulisboa.tecnico.cnv.gameoflife.engines.EngineSelector;
 import pt.ulisboa.tecnico.cnv.javassist.tools.ICount;
 import pt.ulisboa.tecnico.cnv.javassist.model.Statistics;
 import pt.ulisboa.tecnico.cnv.storage.StorageUtil;
@@ -22,62 +22,15 @@ import pt.ulisboa.tecnico.cnv.storage.StorageUtil;
 
 public class GameOfLifeHandler implements HttpHandler, RequestHandler<Map<String, String>, String> {
 
-    private final static ObjectMapper MAPPER = new ObjectMapper();
-
-    /**
-     * Input map model.
-     */
-    private static class GameOfLifeInput {
-        public int[][] map;
-
-        public GameOfLifeInput(int[][] map) {
-            this.map = map;
-        }
-
-        public GameOfLifeInput() {}
-    }
-
     /**
-     * Output (response) model.
+     * Game entrypoint. The simulation may be shared with concurrent requests for the same map (see
+     * {@link GameOfLifeBatcher}). Returns the output map, which is written straight to the response.
      */
-    private static class GameOfLifeResponse {
-        public int[][] inputMap;
-        public int[][] outputMap;
-
-        public GameOfLifeResponse(int[][] inputMap, int[][] outputMap) {
-            this.inputMap = inputMap;
-            this.outputMap = outputMap;
-        }
-
-        public GameOfLifeResponse() {}
-    }
-
-    /**
-     * Game entrypoint.
-     */
-    private String handleWorkload(int[][] inputMap, int iterations) {
-        int height = inputMap.length;
-        int width = (height > 0) ? inputMap[0].length : 0;
-        byte[] map = convertMapToByteArray(inputMap, height, width);
-
-        GameOfLife gol = new GameOfLife(width, height, map);
-        gol.play(iterations);
-        byte[] resultData = gol.getData();
-
-        int[][] resultMap = new int[height][width];
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                resultMap[i][j] = Byte.toUnsignedInt(resultData[i * width + j]);
-            }
-        }
-        GameOfLifeResponse response = new GameOfLifeResponse(inputMap, resultMap);
-
-        try {
-            return MAPPER.writeValueAsString(response);
-        } catch (JsonProcessingException e) {
-            e.printStackTrace();
-            return "{ \"error\":\"" + e.getMessage() + "\"}";
-        }
+    private byte[] handleWorkload(String mapFilename, GameOfLifeMap inputMap, int iterations, String engine) {
+        GameOfLifeBatcher.Result result = GameOfLifeBatcher.play(mapFilename, inputMap, iterations, engine);
+        // Lets the metrics (and the estimator trained on them) tell requested from computed generations.
+        ICount.getThreadStatistics().setSimulatedWork(result.getSimulatedGenerations());
+        return result.getOutputMap();
     }
 
     /**
@@ -105,12 +58,13 @@ public class GameOfLifeHandler implements HttpHandler, RequestHandler<Map<String
         int iterations = Integer.parseInt(parameters.get("iterations"));
         boolean storeMetrics = Boolean.parseBoolean(parameters.get("storeMetrics"));
         String mapFilename = parameters.get("mapFilename");
+        String engine = parameters.get("engine");
+        String format = parameters.get("format");
 
-        int[][] map;
-        try (InputStream mapFileInputStream = getClass().getClassLoader().getResourceAsStream(mapFilename)) {
-            GameOfLifeInput request = MAPPER.readValue(mapFileInputStream, GameOfLifeInput.class);
-            map = request.map;
-        } catch (NullPointerException | JsonProcessingException e) {
+        GameOfLifeMap map;
+        try {
+            map = MapCache.get(mapFilename);
+        } catch (IOException e) {
             e.printStackTrace();
             String errorResponse = "{ \"error\":\"" + e.getMessage() + "\"}";
             he.sendResponseHeaders(400, errorResponse.length());
@@ -120,14 +74,27 @@ public class GameOfLifeHandler implements HttpHandler, RequestHandler<Map<String
             return;
         }
 
-        String response = handleWorkload(map, iterations);
+        byte[] outputMap;
+        try {
+            format = GameOfLifeResponseWriter.format(format);
+            outputMap = handleWorkload(mapFilename, map, iterations, engine);
+        } catch (IllegalArgumentException e) {
+            String errorResponse = "{ \"error\":\"" + e.getMessage() + "\"}";
+            he.sendResponseHeaders(400, errorResponse.length());
+            OutputStream os = he.getResponseBody();
+            os.write(errorResponse.getBytes());
+            os.close();
+            return;
+        }
 
-        he.sendResponseHeaders(200, response.length());
+        Statistics requestStatistics = ICount.getThreadStatistics();
+        he.getResponseHeaders().add("X-Simulated-Generations", String.valueOf(requestStatistics.getSimulatedWork()));
+        // Length 0 selects chunked encoding, so the response is streamed while it is serialized.
+        he.sendResponseHeaders(200, 0);
         OutputStream os = he.getResponseBody();
-        os.write(response.getBytes());
+        GameOfLifeResponseWriter.write(os, format, map, outputMap);
         os.close();
 
-        Statistics requestStatistics = ICount.getThreadStatistics();
         if(storeMetrics) {
             StorageUtil.storeMetrics(parameters, requestStatistics, "gameoflife");
         }
@@ -141,17 +108,26 @@ public class GameOfLifeHandler implements HttpHandler, RequestHandler<Map<String
     public String handleRequest(Map<String,String> event, Context context) {
         int iterations = Integer.parseInt(event.get("iterations"));
         String mapFilename = event.get("mapFilename");
+        String engine = event.get("engine");
+        String format = event.get("format");
 
-        int[][] map;
-        try (InputStream mapFileInputStream = getClass().getClassLoader().getResourceAsStream(mapFilename)) {
-            GameOfLifeInput request = MAPPER.readValue(mapFileInputStream, GameOfLifeInput.class);
-            map = request.map;
-        } catch (IOException | NullPointerException e) {
+        GameOfLifeMap map;
+        try {
+            map = MapCache.get(mapFilename);
+        } catch (IOException e) {
             e.printStackTrace();
             return "{ \"error\":\"" + e.getMessage() + "\"}";
         }
 
-        return handleWorkload(map, iterations);
+        try {
+            format = GameOfLifeResponseWriter.format(format);
+            byte[] outputMap = handleWorkload(mapFilename, map, iterations, engine);
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            GameOfLifeResponseWriter.write(response, format, map, outputMap);
+            return response.toString(StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException | IOException e) {
+            return "{ \"error\":\"" + e.getMessage() + "\"}";
+        }
     }
 
     /**
@@ -159,17 +135,16 @@ public class GameOfLifeHandler implements HttpHandler, RequestHandler<Map<String
      */
     public static void main(String[] args) {
         if (args.length < 2) {
-            System.out.println("Usage: java pt.ulisboa.tecnico.cnv.gameoflife.GameOfLifeHandler <map_json_filename> <iterations>");
+            System.out.println("Usage: java pt.ulisboa.tecnico.cnv.gameoflife.GameOfLifeHandler <map_json_filename> <iterations> [engine]");
             return;
         }
         String mapFilename = args[0];
 
 
-        int[][] intMap;
-        try (InputStream mapFileInputStream = GameOfLifeHandler.class.getClassLoader().getResourceAsStream(mapFilename)) {
-            GameOfLifeInput request = MAPPER.readValue(mapFileInputStream, GameOfLifeInput.class);
-            intMap = request.map;
-        } catch (IOException | NullPointerException e) {
+        GameOfLifeMap inputMap;
+        try {
+            inputMap = MapCache.get(mapFilename);
+        } catch (IOException e) {
             e.printStackTrace();
             System.exit(1);
             return;  // redundant but needed to avoid null-check warning.
@@ -183,38 +158,23 @@ public class GameOfLifeHandler implements HttpHandler, RequestHandler<Map<String
             System.exit(1);
         }
 
-        int rows = intMap.length;
-        int cols = (rows > 0) ? intMap[0].length : 0;
-        byte[] map = convertMapToByteArray(intMap, rows, cols);
+        int rows = inputMap.getHeight();
+        int cols = inputMap.getWidth();
+        byte[] map = inputMap.copyCells();
 
+        String engine = (args.length > 2) ? args[2] : null;
         GameOfLife gol = new GameOfLife(cols, rows, map);
 
         System.out.println("Initial State:");
         System.out.println(gol.gridToString());
 
         // You can also use 'gol.playCLI()' for interactive simulation.
-        gol.play(iterations);
+        EngineSelector.create(engine, cols, rows, map).play(iterations);
 
         System.out.println("Final State:");
         System.out.println(gol.gridToString());
     }
 
-    /**
-     * Util method to convert a 2D int array to a byte array.
-     */
-    private static byte[] convertMapToByteArray(int[][] map, int rows, int cols) {
-        byte[] byteArray = new byte[rows * cols];
-
-        int index = 0;
-        for (int[] row : map) {
-            for (int cell : row) {
-                byteArray[index++] = (byte) cell;
-            }
-        }
-
-        return byteArray;
-    }
-
     /**
      * Parse query string into a map.
      */
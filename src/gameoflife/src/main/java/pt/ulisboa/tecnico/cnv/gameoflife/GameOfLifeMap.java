@@ -0,0 +1,76 @@
+package pt.ulisboa.tecnico.cnv.gameoflife;
+
+import java.util.Arrays;
+
+/**
+ * Immutable Game of Life map, one byte per cell in row-major order. Engines change the grid in place, so they must be
+ * given a {@link #copyCells() copy} of the cells.
+ */
+public final class GameOfLifeMap {
+
+    private final int width;
+    private final int height;
+    private final byte[] cells;
+
+    private GameOfLifeMap(int width, int height, byte[] cells) {
+        this.width = width;
+        this.height = height;
+        this.cells = cells;
+    }
+
+    /**
+     * Packs a map in the JSON layout (a matrix of rows) into bytes.
+     */
+    public static GameOfLifeMap fromMatrix(int[][] map) {
+        int height = map.length;
+        int width = (height > 0) ? map[0].length : 0;
+        byte[] cells = new byte[height * width];
+
+        int index = 0;
+        for (int[] row : map) {
+            for (int cell : row) {
+                cells[index++] = (byte) cell;
+            }
+        }
+        return new GameOfLifeMap(width, height, cells);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getSize() {
+        return cells.length;
+    }
+
+    /**
+     * The cells of the map, shared with the map: they must not be changed.
+     */
+    byte[] cells() {
+        return cells;
+    }
+
+    /**
+     * A new grid holding the cells of the map.
+     */
+    public byte[] copyCells() {
+        return Arrays.copyOf(cells, cells.length);
+    }
+
+    /**
+     * Unpacks the map into the JSON layout.
+     */
+    public int[][] toMatrix() {
+        int[][] matrix = new int[height][width];
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                matrix[i][j] = Byte.toUnsignedInt(cells[i * width + j]);
+            }
+        }
+        return matrix;
+    }
+}
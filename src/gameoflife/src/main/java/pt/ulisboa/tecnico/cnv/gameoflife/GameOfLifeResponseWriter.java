@@ -0,0 +1,153 @@
+package pt.ulisboa.tecnico.cnv.gameoflife;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes Game of Life responses straight from the grids to a stream, through a small buffer, so that no intermediate
+ * matrix or string is ever built. Two formats are supported:
+ *
+ * - {@code json} (default): {@code {"inputMap":[[...]],"outputMap":[[...]]}}, as produced by Jackson.
+ * - {@code rle}: {@code {"width":w,"height":h,"outputMap":"..."}} with the output map in the run length encoded format
+ *   of Life pattern files (b is dead, o is alive, $ ends a row, ! ends the pattern). Trailing dead cells and rows are
+ *   omitted and any non-zero cell is written as alive. The input map is not echoed back.
+ */
+public class GameOfLifeResponseWriter {
+
+    public static final String JSON = "json";
+    public static final String RLE = "rle";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int count = 0;
+
+    private GameOfLifeResponseWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Resolves the requested format, {@link #JSON} when none was given.
+     */
+    public static String format(String format) {
+        if (format == null || format.isEmpty()) {
+            return JSON;
+        }
+        String name = format.toLowerCase();
+        if (!JSON.equals(name) && !RLE.equals(name)) {
+            throw new IllegalArgumentException("Unknown output format: " + format);
+        }
+        return name;
+    }
+
+    /**
+     * Writes the response in the given format and flushes the stream, leaving it open.
+     */
+    public static void write(OutputStream out, String format, GameOfLifeMap inputMap, byte[] outputMap)
+            throws IOException {
+        GameOfLifeResponseWriter writer = new GameOfLifeResponseWriter(out);
+        int width = inputMap.getWidth();
+        int height = inputMap.getHeight();
+        if (RLE.equals(format(format))) {
+            writer.write("{\"width\":");
+            writer.writeNumber(width);
+            writer.write(",\"height\":");
+            writer.writeNumber(height);
+            writer.write(",\"outputMap\":\"");
+            writer.writeRle(outputMap, width, height);
+            writer.write("\"}");
+        } else {
+            writer.write("{\"inputMap\":");
+            writer.writeMatrix(inputMap.cells(), width, height);
+            writer.write(",\"outputMap\":");
+            writer.writeMatrix(outputMap, width, height);
+            writer.write("}");
+        }
+        writer.flush();
+    }
+
+    private void writeMatrix(byte[] cells, int width, int height) throws IOException {
+        writeByte('[');
+        for (int i = 0; i < height; i++) {
+            if (i > 0) {
+                writeByte(',');
+            }
+            writeByte('[');
+            for (int j = 0; j < width; j++) {
+                if (j > 0) {
+                    writeByte(',');
+                }
+                int cell = Byte.toUnsignedInt(cells[i * width + j]);
+                if (cell < 10) {
+                    writeByte('0' + cell);
+                } else {
+                    writeNumber(cell);
+                }
+            }
+            writeByte(']');
+        }
+        writeByte(']');
+    }
+
+    private void writeRle(byte[] cells, int width, int height) throws IOException {
+        int pendingRowEnds = 0;
+        for (int i = 0; i < height; i++) {
+            if (i > 0) {
+                pendingRowEnds++;
+            }
+            int j = 0;
+            while (j < width) {
+                boolean alive = cells[i * width + j] != 0;
+                int run = 1;
+                while (j + run < width && (cells[i * width + j + run] != 0) == alive) {
+                    run++;
+                }
+                if (!alive && j + run == width) {
+                    // Trailing dead cells are implied.
+                    break;
+                }
+                if (pendingRowEnds > 0) {
+                    writeRun(pendingRowEnds, '$');
+                    pendingRowEnds = 0;
+                }
+                writeRun(run, alive ? 'o' : 'b');
+                j += run;
+            }
+        }
+        writeByte('!');
+    }
+
+    private void writeRun(int run, char tag) throws IOException {
+        if (run > 1) {
+            writeNumber(run);
+        }
+        writeByte(tag);
+    }
+
+    private void writeNumber(int value) throws IOException {
+        write(Integer.toString(value));
+    }
+
+    private void write(String ascii) throws IOException {
+        for (int i = 0; i < ascii.length(); i++) {
+            writeByte(ascii.charAt(i));
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (count == buffer.length) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    private void flush() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+        out.flush();
+    }
+}
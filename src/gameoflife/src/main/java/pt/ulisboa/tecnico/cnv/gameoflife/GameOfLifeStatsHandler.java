@@ -0,0 +1,27 @@
+package pt.ulisboa.tecnico.cnv.gameoflife;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Exposes the counters of the Game of Life caches, to be scraped by monitoring.
+ */
+public class GameOfLifeStatsHandler implements HttpHandler {
+
+    @Override
+    public void handle(HttpExchange he) throws IOException {
+        String response = "{\"checkpoints\":{"
+                + "\"hits\":" + CheckpointStore.getHits()
+                + ",\"misses\":" + CheckpointStore.getMisses()
+                + ",\"entries\":" + CheckpointStore.getEntries()
+                + ",\"bytes\":" + CheckpointStore.getStoredBytes()
+                + "}}";
+        he.sendResponseHeaders(200, response.length());
+        OutputStream os = he.getResponseBody();
+        os.write(response.getBytes());
+        os.close();
+    }
+}
@@ -0,0 +1,82 @@
+package pt.ulisboa.tecnico.cnv.gameoflife;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of the maps in the resources, decoded once and kept packed. The cache is held in a static field,
+ * so warm Lambda containers reuse it across invocations as well. Least recently used maps are evicted once the cached
+ * cells go over {@link #MAX_CACHED_CELLS}.
+ */
+public class MapCache {
+
+    public static final long MAX_CACHED_CELLS = 16L * 1024 * 1024;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Map<String, GameOfLifeMap> MAPS = new LinkedHashMap<>(16, 0.75f, true);
+    private static long cachedCells = 0;
+
+    /**
+     * Input map model.
+     */
+    private static class GameOfLifeInput {
+        public int[][] map;
+
+        public GameOfLifeInput(int[][] map) {
+            this.map = map;
+        }
+
+        public GameOfLifeInput() {}
+    }
+
+    /**
+     * Returns the map stored in the resource with the given name, parsing it on the first use.
+     */
+    public static GameOfLifeMap get(String mapFilename) throws IOException {
+        synchronized (MAPS) {
+            GameOfLifeMap map = MAPS.get(mapFilename);
+            if (map != null) {
+                return map;
+            }
+        }
+
+        // Parsed outside the lock; concurrent misses on the same map just parse it twice.
+        GameOfLifeMap map = parse(mapFilename);
+        synchronized (MAPS) {
+            GameOfLifeMap previous = MAPS.put(mapFilename, map);
+            cachedCells += map.getSize() - ((previous != null) ? previous.getSize() : 0);
+            evict();
+        }
+        return map;
+    }
+
+    private static GameOfLifeMap parse(String mapFilename) throws IOException {
+        if (mapFilename == null) {
+            throw new FileNotFoundException("Missing map filename");
+        }
+        try (InputStream mapFileInputStream = MapCache.class.getClassLoader().getResourceAsStream(mapFilename)) {
+            if (mapFileInputStream == null) {
+                throw new FileNotFoundException("Map not found: " + mapFilename);
+            }
+            GameOfLifeInput input = MAPPER.readValue(mapFileInputStream, GameOfLifeInput.class);
+            return GameOfLifeMap.fromMatrix(input.map);
+        }
+    }
+
+    /**
+     * Drops the least recently used maps until the cache is within budget, keeping at least the newest one.
+     */
+    private static void evict() {
+        Iterator<GameOfLifeMap> maps = MAPS.values().iterator();
+        while (cachedCells > MAX_CACHED_CELLS && MAPS.size() > 1) {
+            cachedCells -= maps.next().getSize();
+            maps.remove();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package pt.ulisboa.tecnico.cnv.gameoflife.engines;
+
+/**
+ * Picks the engine for each {@link #play(int)} call from the map size and the iteration count: HashLife for many
+ * iterations on small and medium maps, where its memoization pays off, and the bit-packed engine (on vector lanes when
+ * the Vector API is available) otherwise. When the run was {@link #plan(int) planned}, the iterations left in the plan
+ * count instead, and the HashLife engine (with its memoized nodes) is kept for the following calls.
+ */
+public class AutoGameOfLife implements GameOfLifeEngine {
+
+    /**
+     * Thresholds measured on random soups (30% alive): below these HashLife is slower than the bit-packed engine.
+     */
+    public static final int HASHLIFE_MIN_ITERATIONS = 65536;
+    public static final int HASHLIFE_ITERATIONS_PER_CELL = 64;
+    public static final int HASHLIFE_MAX_CELLS = 128 * 128;
+
+    private final int width;
+    private final int height;
+    private final byte[] data;
+    private long simulatedGenerations = 0;
+    private int planned = 0;
+    private HashLifeGameOfLife hashLife;
+
+    public AutoGameOfLife(int width, int height, byte[] data) {
+        this.width = width;
+        this.height = height;
+        this.data = data;
+    }
+
+    @Override
+    public void plan(int iterations) {
+        planned = iterations;
+    }
+
+    @Override
+    public void play(int iterations) {
+        GameOfLifeEngine engine = select(Math.max(iterations, planned));
+        planned = Math.max(0, planned - iterations);
+        long before = engine.getSimulatedGenerations();
+        engine.play(iterations);
+        simulatedGenerations += engine.getSimulatedGenerations() - before;
+    }
+
+    @Override
+    public byte[] getData() {
+        return data;
+    }
+
+    @Override
+    public long getSimulatedGenerations() {
+        return simulatedGenerations;
+    }
+
+    private GameOfLifeEngine select(int iterations) {
+        long size = (long) width * height;
+        if (size <= HASHLIFE_MAX_CELLS
+                && iterations >= Math.max(HASHLIFE_MIN_ITERATIONS, HASHLIFE_ITERATIONS_PER_CELL * size)) {
+            if (hashLife == null) {
+                hashLife = new HashLifeGameOfLife(width, height, data);
+            }
+            return hashLife;
+        }
+        return EngineSelector.createBitParallel(width, height, data);
+    }
+}
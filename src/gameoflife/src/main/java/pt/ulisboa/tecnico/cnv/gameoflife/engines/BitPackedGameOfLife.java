@@ -0,0 +1,219 @@
+package pt.ulisboa.tecnico.cnv.gameoflife.engines;
+
+import java.util.Arrays;
+
+import pt.ulisboa.tecnico.cnv.gameoflife.GameOfLife;
+
+/**
+ * Game of Life engine that packs 64 cells per long and computes a whole word of cells at once with bit-parallel
+ * neighbour-count adders (SWAR).
+ *
+ * The reference engine wraps neighbours with {@code neighborPos % size} on the 1d index, so the grid behaves as a ring
+ * of {@code size} cells where the neighbours of cell i are i-w-1, i-w, i-w+1, i-1, i+1, i+w-1, i+w and i+w+1. The
+ * packed grid keeps that ring between two halos holding copies of its other end, so every neighbour word is a plain
+ * unaligned read.
+ */
+public class BitPackedGameOfLife implements GameOfLifeEngine {
+
+    final int width;
+    final int height;
+    final int size;
+    final byte[] data;
+
+    /**
+     * Halo length in bits (multiple of 64, at least width + 1), so that the ring starts on a word boundary.
+     */
+    final int pad;
+    final int padWords;
+    final int words;
+    final long lastMask;
+
+    /**
+     * Current and next generation, each laid out as [left halo | ring | right halo].
+     */
+    long[] current;
+    long[] next;
+    private long simulatedGenerations = 0;
+
+    public BitPackedGameOfLife(int width, int height, byte[] data) {
+        this.width = width;
+        this.height = height;
+        this.size = width * height;
+        this.data = data;
+        this.pad = ((width + 1 + 63) >>> 6) << 6;
+        this.padWords = pad >>> 6;
+        this.words = (size + 63) >>> 6;
+        int tail = size & 63;
+        this.lastMask = (tail == 0) ? -1L : (1L << tail) - 1;
+        int length = ((2 * pad + size) >>> 6) + 3;
+        this.current = new long[length];
+        this.next = new long[length];
+    }
+
+    @Override
+    public void play(int iterations) {
+        if (iterations <= 0) {
+            return;
+        }
+        simulatedGenerations += iterations;
+        // With a single row or column some neighbours fold onto the cell itself, which the reference engine skips.
+        if (width < 2 || height < 2) {
+            new GameOfLife(width, height, data).play(iterations);
+            return;
+        }
+        // Cells other than 0/1 are alive but not counted as neighbours by the reference engine; after one
+        // generation the grid is binary.
+        if (!isBinary()) {
+            new GameOfLife(width, height, data).play(1);
+            iterations--;
+        }
+
+        pack();
+        for (int i = 0; i < iterations; i++) {
+            iterate();
+        }
+        unpack();
+    }
+
+    @Override
+    public byte[] getData() {
+        return data;
+    }
+
+    @Override
+    public long getSimulatedGenerations() {
+        return simulatedGenerations;
+    }
+
+    /**
+     * Iterates the game one step forward.
+     */
+    void iterate() {
+        long[] cur = current;
+        long[] nxt = next;
+        for (int j = 0; j < words; j++) {
+            nxt[padWords + j] = nextWord(cur, j);
+        }
+        current = nxt;
+        next = cur;
+        fillHalos(current);
+    }
+
+    /**
+     * Next state of the j-th word of cells of the ring.
+     */
+    final long nextWord(long[] cur, int j) {
+        int w = width;
+        int base = pad + (j << 6);
+        long center = cur[padWords + j];
+
+        // Three-bit counter (mod 8) of alive neighbours, one lane per cell. A count of 8 wraps to 0, which is
+        // neither 2 nor 3 and therefore still yields a dead cell.
+        long s0 = 0, s1 = 0, s2 = 0, n, c0, c1;
+
+        n = read(cur, base - w - 1);
+        c0 = s0 & n; s0 ^= n; c1 = s1 & c0; s1 ^= c0; s2 ^= c1;
+        n = read(cur, base - w);
+        c0 = s0 & n; s0 ^= n; c1 = s1 & c0; s1 ^= c0; s2 ^= c1;
+        n = read(cur, base - w + 1);
+        c0 = s0 & n; s0 ^= n; c1 = s1 & c0; s1 ^= c0; s2 ^= c1;
+        n = read(cur, base - 1);
+        c0 = s0 & n; s0 ^= n; c1 = s1 & c0; s1 ^= c0; s2 ^= c1;
+        n = read(cur, base + 1);
+        c0 = s0 & n; s0 ^= n; c1 = s1 & c0; s1 ^= c0; s2 ^= c1;
+        n = read(cur, base + w - 1);
+        c0 = s0 & n; s0 ^= n; c1 = s1 & c0; s1 ^= c0; s2 ^= c1;
+        n = read(cur, base + w);
+        c0 = s0 & n; s0 ^= n; c1 = s1 & c0; s1 ^= c0; s2 ^= c1;
+        n = read(cur, base + w + 1);
+        c0 = s0 & n; s0 ^= n; c1 = s1 & c0; s1 ^= c0; s2 ^= c1;
+
+        // Alive next if count == 3, or count == 2 and currently alive.
+        long result = s1 & ~s2 & (s0 | center);
+        return (j == words - 1) ? result & lastMask : result;
+    }
+
+    /**
+     * Reads the 64 bits starting at an arbitrary bit position.
+     */
+    private static long read(long[] a, int pos) {
+        int index = pos >>> 6;
+        int shift = pos & 63;
+        if (shift == 0) {
+            return a[index];
+        }
+        return (a[index] >>> shift) | (a[index + 1] << (64 - shift));
+    }
+
+    /**
+     * Writes 64 bits starting at an arbitrary bit position, keeping the surrounding bits.
+     */
+    private static void write(long[] a, int pos, long value) {
+        int index = pos >>> 6;
+        int shift = pos & 63;
+        if (shift == 0) {
+            a[index] = value;
+            return;
+        }
+        long low = (1L << shift) - 1;
+        a[index] = (a[index] & low) | (value << shift);
+        a[index + 1] = (a[index + 1] & ~low) | (value >>> (64 - shift));
+    }
+
+    /**
+     * Copies the end of the ring before its start and the start of the ring after its end.
+     */
+    void fillHalos(long[] a) {
+        if (pad > size) {
+            // Tiny grids: the halo wraps around the ring more than once.
+            for (int p = 0; p < pad; p++) {
+                setBit(a, p, getBit(a, pad + Math.floorMod(p - pad, size)));
+                setBit(a, pad + size + p, getBit(a, pad + (p % size)));
+            }
+            return;
+        }
+        for (int k = 0; k < padWords; k++) {
+            a[k] = read(a, size + (k << 6));
+        }
+        for (int k = 0; k < padWords; k++) {
+            write(a, pad + size + (k << 6), a[padWords + k]);
+        }
+    }
+
+    private static boolean getBit(long[] a, int pos) {
+        return ((a[pos >>> 6] >>> (pos & 63)) & 1L) != 0;
+    }
+
+    private static void setBit(long[] a, int pos, boolean value) {
+        if (value) {
+            a[pos >>> 6] |= 1L << (pos & 63);
+        } else {
+            a[pos >>> 6] &= ~(1L << (pos & 63));
+        }
+    }
+
+    boolean isBinary() {
+        for (byte cell : data) {
+            if (cell != 0 && cell != 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void pack() {
+        Arrays.fill(current, 0L);
+        for (int i = 0; i < size; i++) {
+            if (data[i] == 1) {
+                current[padWords + (i >>> 6)] |= 1L << (i & 63);
+            }
+        }
+        fillHalos(current);
+    }
+
+    private void unpack() {
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) ((current[padWords + (i >>> 6)] >>> (i & 63)) & 1L);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package pt.ulisboa.tecnico.cnv.gameoflife.engines;
+
+import java.util.Arrays;
+
+/**
+ * Wraps an engine and fast-forwards the game once it settles into a still life or a cycle.
+ *
+ * During the first {@link #DETECTION_GENERATIONS} generations the grid is advanced in chunks by a sampling engine
+ * (usually the wrapped one) and a hash of every sampled generation is kept in a bounded window, together with a packed
+ * snapshot used to confirm matches with a full compare. When a generation repeats, the remaining iterations are
+ * reduced modulo the distance between the two matches (a multiple of the period). Whatever is left is played by the
+ * wrapped engine.
+ *
+ * The window is kept across {@link #play(int)} calls, so a run split into several calls (e.g. at checkpoints) finds
+ * the same cycles as a single call.
+ */
+public class CycleDetectingGameOfLife implements GameOfLifeEngine {
+
+    public static final int DETECTION_GENERATIONS = 16384;
+    public static final int SAMPLE_INTERVAL = 8;
+    public static final int MAX_WINDOW_SAMPLES = 256;
+    public static final long MAX_WINDOW_BYTES = 8L * 1024 * 1024;
+
+    private final int size;
+    private final byte[] data;
+    private final GameOfLifeEngine delegate;
+    private final GameOfLifeEngine sampler;
+
+    private long simulatedGenerations = 0;
+    private long skippedGenerations = 0;
+    private long period = 0;
+
+    /**
+     * Sampled generations, as a ring of at most windowSamples entries, or null once detection is over.
+     */
+    private long[] hashes;
+    private long[][] snapshots;
+    private long[] generations;
+    private int stored = 0;
+    private int next = 0;
+    private long generation = 0;
+
+    private int planned = 0;
+
+    public CycleDetectingGameOfLife(int width, int height, byte[] data, GameOfLifeEngine delegate,
+                                    GameOfLifeEngine sampler) {
+        this.size = width * height;
+        this.data = data;
+        this.delegate = delegate;
+        this.sampler = sampler;
+        int words = (size + 63) >>> 6;
+        int windowSamples = (int) Math.min(MAX_WINDOW_SAMPLES, MAX_WINDOW_BYTES / (8L * Math.max(1, words)));
+        if (windowSamples >= 2) {
+            this.hashes = new long[windowSamples];
+            this.snapshots = new long[windowSamples][];
+            this.generations = new long[windowSamples];
+        }
+    }
+
+    @Override
+    public void play(int iterations) {
+        int remaining = Math.max(0, iterations);
+        int plannedLeft = Math.max(remaining, planned);
+        planned = Math.max(0, planned - remaining);
+
+        if (hashes != null && remaining > 0) {
+            int left = detectCycle(remaining);
+            plannedLeft -= remaining - left;
+            remaining = left;
+        }
+        if (period > 0) {
+            // Already known to cycle, e.g. on a second call.
+            int reduced = (int) (remaining % period);
+            skippedGenerations += remaining - reduced;
+            remaining = reduced;
+            plannedLeft = reduced;
+        }
+        if (remaining > 0) {
+            long before = delegate.getSimulatedGenerations();
+            delegate.plan(plannedLeft);
+            delegate.play(remaining);
+            simulatedGenerations += delegate.getSimulatedGenerations() - before;
+        }
+    }
+
+    /**
+     * Samples generations until a repeated one is found, the detection budget runs out or the iterations of this call
+     * are over, and returns the number of iterations left to play.
+     */
+    private int detectCycle(int remaining) {
+        if (stored == 0) {
+            // Cells other than 0/1 behave differently from a 1 and cannot repeat; start sampling after the first step.
+            if (!isBinary()) {
+                sampler.play(1);
+                simulatedGenerations++;
+                generation++;
+                remaining--;
+            }
+            if (sample()) {
+                return remaining;
+            }
+        }
+        while (remaining > 0) {
+            int step = Math.min(SAMPLE_INTERVAL, remaining);
+            if (generation + step > DETECTION_GENERATIONS) {
+                endDetection();
+                return remaining;
+            }
+            sampler.play(step);
+            simulatedGenerations += step;
+            generation += step;
+            remaining -= step;
+            if (sample()) {
+                return remaining;
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * Adds the current generation to the window. Returns true, ending detection, if it was already there.
+     */
+    private boolean sample() {
+        long[] snapshot = pack();
+        long hash = hash(snapshot);
+        for (int k = 0; k < stored; k++) {
+            if (hashes[k] == hash && Arrays.equals(snapshots[k], snapshot)) {
+                period = generation - generations[k];
+                endDetection();
+                return true;
+            }
+        }
+        hashes[next] = hash;
+        snapshots[next] = snapshot;
+        generations[next] = generation;
+        next = (next + 1) % hashes.length;
+        stored = Math.min(stored + 1, hashes.length);
+        return false;
+    }
+
+    private void endDetection() {
+        hashes = null;
+        snapshots = null;
+        generations = null;
+    }
+
+    /**
+     * The plan is passed on to the wrapped engine once detection is over, as the sampler may be the same engine.
+     */
+    @Override
+    public void plan(int iterations) {
+        planned = iterations;
+    }
+
+    @Override
+    public byte[] getData() {
+        return data;
+    }
+
+    @Override
+    public long getSimulatedGenerations() {
+        return simulatedGenerations;
+    }
+
+    /**
+     * Generations skipped thanks to the detected cycle.
+     */
+    public long getSkippedGenerations() {
+        return skippedGenerations;
+    }
+
+    /**
+     * A multiple of the period of the detected cycle (1 for still lifes), or 0 if none was found.
+     */
+    public long getPeriod() {
+        return period;
+    }
+
+    private boolean isBinary() {
+        for (byte cell : data) {
+            if (cell != 0 && cell != 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long[] pack() {
+        long[] packed = new long[(size + 63) >>> 6];
+        for (int i = 0; i < size; i++) {
+            if (data[i] != 0) {
+                packed[i >>> 6] |= 1L << (i & 63);
+            }
+        }
+        return packed;
+    }
+
+    private static long hash(long[] packed) {
+        long h = 0xcbf29ce484222325L;
+        for (long word : packed) {
+            h ^= word;
+            h *= 0x100000001b3L;
+            h ^= h >>> 29;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,134 @@
+package pt.ulisboa.tecnico.cnv.gameoflife.engines;
+
+import java.lang.reflect.Constructor;
+
+import pt.ulisboa.tecnico.cnv.gameoflife.GameOfLife;
+
+/**
+ * Builds the engine for a request. The engine can be chosen per request (e.g. the {@code engine} query parameter) or
+ * globally through the {@code GAMEOFLIFE_ENGINE} environment variable. Every engine but the reference and the sparse
+ * ones is wrapped with cycle detection: its samples unpack and hash the whole grid, which would undo the savings of
+ * the sparse engine.
+ */
+public class EngineSelector {
+
+    public static final String AUTO = "auto";
+    public static final String SCALAR = "scalar";
+    public static final String BITPACKED = "bitpacked";
+    public static final String PARALLEL = "parallel";
+    public static final String HASHLIFE = "hashlife";
+    public static final String SPARSE = "sparse";
+    public static final String VECTOR = "vector";
+
+    private static final String DEFAULT_ENGINE = defaultEngine();
+
+    /**
+     * Constructor of {@code VectorGameOfLife}, or null when this JVM cannot run it: the class is only built on JDK 17+
+     * and needs {@code --add-modules jdk.incubator.vector} at runtime.
+     */
+    private static final Constructor<?> VECTOR_ENGINE = vectorEngine();
+
+    /**
+     * Until the JIT compiles the Vector API calls the vector engine is much slower than the bit-packed one, so it is
+     * only picked automatically once a background warm-up is done.
+     */
+    private static final int VECTOR_WARMUP_SIDE = 256;
+    private static final int VECTOR_WARMUP_GENERATIONS = 2000;
+    private static volatile boolean vectorWarm = false;
+
+    static {
+        if (VECTOR_ENGINE != null) {
+            Thread warmup = new Thread(EngineSelector::warmUpVector, "gameoflife-vector-warmup");
+            warmup.setDaemon(true);
+            warmup.start();
+        }
+    }
+
+    private static String defaultEngine() {
+        String engine = System.getenv("GAMEOFLIFE_ENGINE");
+        return (engine == null || engine.isEmpty()) ? AUTO : engine.toLowerCase();
+    }
+
+    private static Constructor<?> vectorEngine() {
+        try {
+            Constructor<?> constructor = Class.forName(EngineSelector.class.getPackageName() + ".VectorGameOfLife")
+                    .getDeclaredConstructor(int.class, int.class, byte[].class);
+            // Links the Vector API now rather than on the first request.
+            ((GameOfLifeEngine) constructor.newInstance(8, 8, new byte[64])).play(1);
+            return constructor;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    private static void warmUpVector() {
+        byte[] soup = new byte[VECTOR_WARMUP_SIDE * VECTOR_WARMUP_SIDE];
+        for (int i = 0; i < soup.length; i++) {
+            soup[i] = (byte) ((i * 0x9E3779B9 >>> 29) < 3 ? 1 : 0);
+        }
+        try {
+            ((GameOfLifeEngine) VECTOR_ENGINE.newInstance(VECTOR_WARMUP_SIDE, VECTOR_WARMUP_SIDE, soup))
+                    .play(VECTOR_WARMUP_GENERATIONS);
+            vectorWarm = true;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            System.err.println("Vector engine warm-up failed, using the bit-packed engine: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Whether the Vector API engine can be used in this JVM.
+     */
+    public static boolean isVectorAvailable() {
+        return VECTOR_ENGINE != null;
+    }
+
+    /**
+     * The fastest engine computing every cell of every generation: the Vector API one when available and warmed up,
+     * the bit-packed one otherwise.
+     */
+    public static GameOfLifeEngine createBitParallel(int width, int height, byte[] data) {
+        return vectorWarm ? createVector(width, height, data) : new BitPackedGameOfLife(width, height, data);
+    }
+
+    /**
+     * Creates the Vector API engine, which must be {@link #isVectorAvailable() available}.
+     */
+    public static GameOfLifeEngine createVector(int width, int height, byte[] data) {
+        if (VECTOR_ENGINE == null) {
+            throw new IllegalArgumentException("The vector engine is not available in this JVM");
+        }
+        try {
+            return (GameOfLifeEngine) VECTOR_ENGINE.newInstance(width, height, data);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Creates the requested engine, falling back to the global default when {@code engine} is null or empty.
+     */
+    public static GameOfLifeEngine create(String engine, int width, int height, byte[] data) {
+        String name = (engine == null || engine.isEmpty()) ? DEFAULT_ENGINE : engine.toLowerCase();
+        if (SCALAR.equals(name)) {
+            return new GameOfLife(width, height, data);
+        }
+        if (SPARSE.equals(name)) {
+            return new SparseGameOfLife(width, height, data);
+        }
+        GameOfLifeEngine delegate = createEngine(name, width, height, data);
+        // HashLife is slow at advancing a few generations at a time, so cycles are looked for with the bit-packed engine.
+        GameOfLifeEngine sampler = HASHLIFE.equals(name) ? createBitParallel(width, height, data) : delegate;
+        return new CycleDetectingGameOfLife(width, height, data, delegate, sampler);
+    }
+
+    private static GameOfLifeEngine createEngine(String name, int width, int height, byte[] data) {
+        switch (name) {
+            case AUTO: return new AutoGameOfLife(width, height, data);
+            case BITPACKED: return new BitPackedGameOfLife(width, height, data);
+            case PARALLEL: return new ParallelGameOfLife(width, height, data);
+            case HASHLIFE: return new HashLifeGameOfLife(width, height, data);
+            case VECTOR: return createVector(width, height, data);
+            default: throw new IllegalArgumentException("Unknown Game of Life engine: " + name);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package pt.ulisboa.tecnico.cnv.gameoflife.engines;
+
+/**
+ * Common contract of every Game of Life implementation. Engines own the grid data they were built with and must
+ * produce exactly the same generations as the reference {@link pt.ulisboa.tecnico.cnv.gameoflife.GameOfLife}.
+ */
+public interface GameOfLifeEngine {
+
+    /**
+     * Advances the game the given number of generations.
+     */
+    void play(int iterations);
+
+    /**
+     * Announces that the next {@link #play(int)} calls add up to about the given number of iterations, e.g. when a
+     * run is split at checkpoints, for engines that pick their algorithm from the iteration count.
+     */
+    default void plan(int iterations) {
+    }
+
+    /**
+     * Current grid in 1d format (one byte per cell, row-major).
+     */
+    byte[] getData();
+
+    /**
+     * Generations actually computed so far. Lower than the requested iterations when part of the work was skipped,
+     * e.g. when a cycle was fast-forwarded.
+     */
+    long getSimulatedGenerations();
+}
@@ -0,0 +1,425 @@
+package pt.ulisboa.tecnico.cnv.gameoflife.engines;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import pt.ulisboa.tecnico.cnv.gameoflife.GameOfLife;
+
+/**
+ * HashLife (memoized quadtree) engine, able to advance the grid 2^k generations in a single step.
+ * Read more details here: https://en.wikipedia.org/wiki/Hashlife
+ *
+ * The reference engine wraps neighbours with {@code neighborPos % size} on the 1d index, which is the same as an
+ * infinite plane where cell (x, y) holds cell {@code (y * width + x) mod size} of the grid. To advance 2^j generations
+ * the engine builds a quadtree of that plane big enough for its center to cover the whole grid after 2^j generations,
+ * and reads the grid back from the center. Because a square of the plane only depends on the 1d index of its corner,
+ * building the tree costs at most one node per index and level, no matter how big the tree is.
+ *
+ * Canonical nodes are kept in a bounded table, whose default budget is sized from the maximum heap. When the table is
+ * over its budget after a step it is flushed, dropping every node and memoized result. If a single step needs more
+ * than {@link #HARD_LIMIT_FACTOR} times the budget, it is abandoned and the rest of the generations are computed by the
+ * bit-packed engine instead, as are those of every later call.
+ */
+public class HashLifeGameOfLife implements GameOfLifeEngine {
+
+    /**
+     * Approximate heap used by a node: the node itself, its entry in the node table and its share of the position
+     * table.
+     */
+    public static final int BYTES_PER_NODE = 160;
+    /**
+     * Share of the maximum heap the node table may use at its budget.
+     */
+    public static final int HEAP_FRACTION = 16;
+    public static final int DEFAULT_MAX_NODES = (int) Math.max(16_384,
+            Math.min(500_000, Runtime.getRuntime().maxMemory() / HEAP_FRACTION / BYTES_PER_NODE));
+    public static final int HARD_LIMIT_FACTOR = 2;
+
+    /**
+     * Leaves are 8x8 squares packed in a long, bit {@code y * 8 + x}.
+     */
+    private static final int LEAF_LEVEL = 3;
+
+    private final int width;
+    private final int height;
+    private final int size;
+    private final byte[] data;
+    private final int maxNodes;
+    private final int minLevel;
+
+    private final Map<Node, Node> nodes = new HashMap<>();
+    private final Map<Long, Node> positions = new HashMap<>();
+    private long flushes = 0;
+    private long simulatedGenerations = 0;
+
+    /**
+     * Engine computing the generations once a step went over the hard limit, or null.
+     */
+    private GameOfLifeEngine fallback;
+
+    /**
+     * Thrown when the node table reaches the hard limit in the middle of a step.
+     */
+    private static final class OverBudget extends RuntimeException {
+        OverBudget() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final OverBudget OVER_BUDGET = new OverBudget();
+
+    private static final class Node {
+        final int level;
+        final Node nw, ne, sw, se;
+        final long bits;
+        final int hash;
+
+        /**
+         * Center of this node advanced 2^resultStep generations.
+         */
+        Node result;
+        int resultStep = -1;
+
+        Node(long bits) {
+            this.level = LEAF_LEVEL;
+            this.nw = this.ne = this.sw = this.se = null;
+            this.bits = bits;
+            this.hash = Long.hashCode(bits);
+        }
+
+        Node(Node nw, Node ne, Node sw, Node se) {
+            this.level = nw.level + 1;
+            this.nw = nw;
+            this.ne = ne;
+            this.sw = sw;
+            this.se = se;
+            this.bits = 0;
+            int h = System.identityHashCode(nw);
+            h = 31 * h + System.identityHashCode(ne);
+            h = 31 * h + System.identityHashCode(sw);
+            h = 31 * h + System.identityHashCode(se);
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Node)) return false;
+            Node that = (Node) o;
+            return level == that.level && bits == that.bits
+                    && nw == that.nw && ne == that.ne && sw == that.sw && se == that.se;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    public HashLifeGameOfLife(int width, int height, byte[] data) {
+        this(width, height, data, DEFAULT_MAX_NODES);
+    }
+
+    public HashLifeGameOfLife(int width, int height, byte[] data, int maxNodes) {
+        this.width = width;
+        this.height = height;
+        this.size = width * height;
+        this.data = data;
+        this.maxNodes = maxNodes;
+        // The center half of the tree must cover the whole grid.
+        int level = LEAF_LEVEL + 1;
+        while ((1L << (level - 1)) < Math.max(width, height)) {
+            level++;
+        }
+        this.minLevel = level;
+    }
+
+    @Override
+    public void play(int iterations) {
+        if (iterations <= 0) {
+            return;
+        }
+        simulatedGenerations += iterations;
+        if (fallback != null) {
+            fallback.play(iterations);
+            return;
+        }
+        // With a single row or column some neighbours fold onto the cell itself, which the reference engine skips.
+        if (width < 2 || height < 2) {
+            new GameOfLife(width, height, data).play(iterations);
+            return;
+        }
+        // Cells other than 0/1 are alive but not counted as neighbours by the reference engine; after one
+        // generation the grid is binary.
+        for (byte cell : data) {
+            if (cell != 0 && cell != 1) {
+                new GameOfLife(width, height, data).play(1);
+                iterations--;
+                break;
+            }
+        }
+
+        for (int step = 30; step >= 0; step--) {
+            if ((iterations & (1 << step)) != 0 && !jump(step)) {
+                fallback = EngineSelector.createBitParallel(width, height, data);
+                fallback.play((int) (iterations & ((1L << (step + 1)) - 1)));
+                return;
+            }
+        }
+    }
+
+    @Override
+    public byte[] getData() {
+        return data;
+    }
+
+    @Override
+    public long getSimulatedGenerations() {
+        return simulatedGenerations;
+    }
+
+    /**
+     * Number of times the node table went over budget and was flushed.
+     */
+    public long getFlushes() {
+        return flushes;
+    }
+
+    /**
+     * Whether a step went over the hard limit, so that generations are now computed by the bit-packed engine.
+     */
+    public boolean isFallingBack() {
+        return fallback != null;
+    }
+
+    /**
+     * Advances the grid 2^step generations. Returns false, leaving the grid as it was, if the node table reached the
+     * hard limit.
+     */
+    private boolean jump(int step) {
+        int level = Math.max(minLevel, step + 2);
+        long quarter = 1L << (level - 2);
+        // The root's top-left corner is at (-quarter, -quarter), so its center starts at (0, 0).
+        long corner = Math.floorMod(-mod(quarter) * (width + 1L), (long) size);
+
+        Node center;
+        try {
+            center = result(build(level, corner), step);
+        } catch (OverBudget e) {
+            positions.clear();
+            flush();
+            return false;
+        }
+        positions.clear();
+        writeGrid(center, 0, 0);
+
+        if (nodes.size() > maxNodes) {
+            flush();
+        }
+        return true;
+    }
+
+    private void flush() {
+        nodes.clear();
+        flushes++;
+    }
+
+    private long mod(long value) {
+        return value % size;
+    }
+
+    /**
+     * Builds the node of the given level whose top-left corner is the cell with the given 1d index.
+     */
+    private Node build(int level, long index) {
+        Long key = ((long) level << 40) | index;
+        Node node = positions.get(key);
+        if (node != null) {
+            return node;
+        }
+        if (level == LEAF_LEVEL) {
+            long bits = 0;
+            for (int y = 0; y < 8; y++) {
+                for (int x = 0; x < 8; x++) {
+                    if (data[(int) ((index + (long) y * width + x) % size)] == 1) {
+                        bits |= 1L << (y * 8 + x);
+                    }
+                }
+            }
+            node = leaf(bits);
+        } else {
+            long half = mod(1L << (level - 1));
+            long down = (half * width) % size;
+            node = join(build(level - 1, index),
+                    build(level - 1, (index + half) % size),
+                    build(level - 1, (index + down) % size),
+                    build(level - 1, (index + down + half) % size));
+        }
+        positions.put(key, node);
+        return node;
+    }
+
+    /**
+     * Writes the cells of the node whose top-left corner is (x0, y0) that fall inside the grid.
+     */
+    private void writeGrid(Node node, long x0, long y0) {
+        long side = 1L << node.level;
+        if (x0 >= width || y0 >= height || x0 + side <= 0 || y0 + side <= 0) {
+            return;
+        }
+        if (node.level == LEAF_LEVEL) {
+            for (int y = 0; y < 8; y++) {
+                for (int x = 0; x < 8; x++) {
+                    long cx = x0 + x;
+                    long cy = y0 + y;
+                    if (cx < width && cy < height) {
+                        data[(int) (cy * width + cx)] = (byte) ((node.bits >>> (y * 8 + x)) & 1L);
+                    }
+                }
+            }
+            return;
+        }
+        long half = side >> 1;
+        writeGrid(node.nw, x0, y0);
+        writeGrid(node.ne, x0 + half, y0);
+        writeGrid(node.sw, x0, y0 + half);
+        writeGrid(node.se, x0 + half, y0 + half);
+    }
+
+    private Node leaf(long bits) {
+        return canonical(new Node(bits));
+    }
+
+    private Node join(Node nw, Node ne, Node sw, Node se) {
+        return canonical(new Node(nw, ne, sw, se));
+    }
+
+    private Node canonical(Node node) {
+        Node existing = nodes.get(node);
+        if (existing != null) {
+            return existing;
+        }
+        if (nodes.size() >= (long) maxNodes * HARD_LIMIT_FACTOR) {
+            throw OVER_BUDGET;
+        }
+        nodes.put(node, node);
+        return node;
+    }
+
+    /**
+     * Center of the node (half its size) advanced 2^step generations, with step <= level - 2.
+     */
+    private Node result(Node node, int step) {
+        if (node.result != null && node.resultStep == step) {
+            return node.result;
+        }
+        Node result;
+        if (node.level == LEAF_LEVEL + 1) {
+            result = leaf(simulate(node, 1 << step));
+        } else {
+            Node n00 = node.nw;
+            Node n01 = horizontal(node.nw, node.ne);
+            Node n02 = node.ne;
+            Node n10 = vertical(node.nw, node.sw);
+            Node n11 = center(node);
+            Node n12 = vertical(node.ne, node.se);
+            Node n20 = node.sw;
+            Node n21 = horizontal(node.sw, node.se);
+            Node n22 = node.se;
+
+            if (step == node.level - 2) {
+                // Two half-steps: nine sub-squares advanced 2^(step-1), then four overlapping squares again.
+                Node r00 = result(n00, step - 1), r01 = result(n01, step - 1), r02 = result(n02, step - 1);
+                Node r10 = result(n10, step - 1), r11 = result(n11, step - 1), r12 = result(n12, step - 1);
+                Node r20 = result(n20, step - 1), r21 = result(n21, step - 1), r22 = result(n22, step - 1);
+                result = join(result(join(r00, r01, r10, r11), step - 1),
+                        result(join(r01, r02, r11, r12), step - 1),
+                        result(join(r10, r11, r20, r21), step - 1),
+                        result(join(r11, r12, r21, r22), step - 1));
+            } else {
+                // Smaller step: nine sub-squares advanced 2^step, then the centers of four overlapping squares.
+                Node r00 = result(n00, step), r01 = result(n01, step), r02 = result(n02, step);
+                Node r10 = result(n10, step), r11 = result(n11, step), r12 = result(n12, step);
+                Node r20 = result(n20, step), r21 = result(n21, step), r22 = result(n22, step);
+                result = join(center(join(r00, r01, r10, r11)),
+                        center(join(r01, r02, r11, r12)),
+                        center(join(r10, r11, r20, r21)),
+                        center(join(r11, r12, r21, r22)));
+            }
+        }
+        node.result = result;
+        node.resultStep = step;
+        return result;
+    }
+
+    /**
+     * Centered sub-node (half the size) of the node, without advancing time.
+     */
+    private Node center(Node node) {
+        if (node.level == LEAF_LEVEL + 1) {
+            long bits = 0;
+            for (int y = 0; y < 8; y++) {
+                for (int x = 0; x < 8; x++) {
+                    if (cellOf16(node, x + 4, y + 4)) {
+                        bits |= 1L << (y * 8 + x);
+                    }
+                }
+            }
+            return leaf(bits);
+        }
+        return join(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw);
+    }
+
+    private Node horizontal(Node w, Node e) {
+        return join(w.ne, e.nw, w.se, e.sw);
+    }
+
+    private Node vertical(Node n, Node s) {
+        return join(n.sw, n.se, s.nw, s.ne);
+    }
+
+    private static boolean cellOf16(Node node, int x, int y) {
+        Node quadrant = (y < 8) ? (x < 8 ? node.nw : node.ne) : (x < 8 ? node.sw : node.se);
+        return ((quadrant.bits >>> ((y & 7) * 8 + (x & 7))) & 1L) != 0;
+    }
+
+    /**
+     * Runs a 16x16 node for up to 4 generations and returns its 8x8 center.
+     */
+    private static long simulate(Node node, int generations) {
+        int[] rows = new int[16];
+        for (int y = 0; y < 16; y++) {
+            for (int x = 0; x < 16; x++) {
+                if (cellOf16(node, x, y)) {
+                    rows[y] |= 1 << x;
+                }
+            }
+        }
+        int[] next = new int[16];
+        for (int g = 0; g < generations; g++) {
+            for (int y = 1; y < 15; y++) {
+                int up = rows[y - 1], row = rows[y], down = rows[y + 1];
+                int[] neighbours = {up << 1, up, up >>> 1, row << 1, row >>> 1, down << 1, down, down >>> 1};
+                int s0 = 0, s1 = 0, s2 = 0;
+                for (int n : neighbours) {
+                    int c0 = s0 & n;
+                    s0 ^= n;
+                    int c1 = s1 & c0;
+                    s1 ^= c0;
+                    s2 ^= c1;
+                }
+                next[y] = s1 & ~s2 & (s0 | row) & 0xFFFF;
+            }
+            int[] tmp = rows;
+            rows = next;
+            next = tmp;
+            rows[0] = 0;
+            rows[15] = 0;
+        }
+        long bits = 0;
+        for (int y = 0; y < 8; y++) {
+            bits |= (long) ((rows[y + 4] >>> 4) & 0xFF) << (y * 8);
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,197 @@
+package pt.ulisboa.tecnico.cnv.gameoflife.engines;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import pt.ulisboa.tecnico.cnv.gameoflife.GameOfLife;
+
+/**
+ * Multi-core Game of Life engine. The grid is split into bands of rows, each computed by its own thread, with two
+ * pre-allocated buffers that are swapped between generations by a barrier. No grid is allocated per generation.
+ *
+ * Note that instructions executed by the helper threads are not counted in the request thread's statistics.
+ */
+public class ParallelGameOfLife implements GameOfLifeEngine {
+
+    private final static byte ALIVE = 1;
+    private final static byte DEAD = 0;
+
+    /**
+     * Smallest number of cells worth handing to a separate thread.
+     */
+    private static final int MIN_CELLS_PER_BAND = 4096;
+
+    private static final ExecutorService BAND_WORKERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "gameoflife-band");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int width;
+    private final int height;
+    private final int size;
+    private final int threads;
+    private final byte[] data;
+
+    private byte[] current;
+    private byte[] next;
+    private long simulatedGenerations = 0;
+
+    public ParallelGameOfLife(int width, int height, byte[] data) {
+        this(width, height, data, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelGameOfLife(int width, int height, byte[] data, int threads) {
+        this.width = width;
+        this.height = height;
+        this.size = width * height;
+        this.data = data;
+        this.threads = Math.max(1, threads);
+        this.current = data;
+        this.next = new byte[size];
+    }
+
+    @Override
+    public void play(int iterations) {
+        if (iterations <= 0) {
+            return;
+        }
+        simulatedGenerations += iterations;
+        // With a single row or column some neighbours fold onto the cell itself, which the reference engine skips.
+        if (width < 2 || height < 2) {
+            new GameOfLife(width, height, data).play(iterations);
+            return;
+        }
+
+        int bands = Math.max(1, Math.min(threads, Math.min(height, size / MIN_CELLS_PER_BAND)));
+        if (bands == 1) {
+            for (int i = 0; i < iterations; i++) {
+                iterate(0, size, current, next);
+                swap();
+            }
+        } else {
+            playBands(iterations, bands);
+        }
+
+        if (current != data) {
+            System.arraycopy(current, 0, data, 0, size);
+            next = current;
+            current = data;
+        }
+    }
+
+    @Override
+    public byte[] getData() {
+        return data;
+    }
+
+    @Override
+    public long getSimulatedGenerations() {
+        return simulatedGenerations;
+    }
+
+    private void playBands(int iterations, int bands) {
+        CyclicBarrier barrier = new CyclicBarrier(bands, this::swap);
+        Future<?>[] helpers = new Future<?>[bands - 1];
+        for (int b = 1; b < bands; b++) {
+            int band = b;
+            helpers[b - 1] = BAND_WORKERS.submit(() -> playBand(band, bands, iterations, barrier));
+        }
+        playBand(0, bands, iterations, barrier);
+
+        for (Future<?> helper : helpers) {
+            try {
+                helper.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Computes every generation of one band, waiting for the other bands at the end of each generation.
+     */
+    private void playBand(int band, int bands, int iterations, CyclicBarrier barrier) {
+        int from = (int) ((long) height * band / bands) * width;
+        int to = (int) ((long) height * (band + 1) / bands) * width;
+        try {
+            for (int i = 0; i < iterations; i++) {
+                iterate(from, to, current, next);
+                barrier.await();
+            }
+        } catch (InterruptedException e) {
+            barrier.reset();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (BrokenBarrierException e) {
+            throw new RuntimeException(e);
+        } catch (RuntimeException e) {
+            barrier.reset();
+            throw e;
+        }
+    }
+
+    private void swap() {
+        byte[] tmp = current;
+        current = next;
+        next = tmp;
+    }
+
+    /**
+     * Computes the next state of the cells [from, to) of the 1d grid.
+     */
+    private void iterate(int from, int to, byte[] d, byte[] out) {
+        int w = width;
+        // Cells whose neighbours never wrap around the ends of the 1d grid.
+        int innerFrom = Math.max(from, w + 1);
+        int innerTo = Math.min(to, size - w - 1);
+
+        int i = from;
+        for (; i < Math.min(innerFrom, to); i++) {
+            out[i] = isAliveWrapped(i, d);
+        }
+        for (; i < innerTo; i++) {
+            int aliveNeighbors = (d[i - w - 1] == ALIVE ? 1 : 0) + (d[i - w] == ALIVE ? 1 : 0)
+                    + (d[i - w + 1] == ALIVE ? 1 : 0) + (d[i - 1] == ALIVE ? 1 : 0)
+                    + (d[i + 1] == ALIVE ? 1 : 0) + (d[i + w - 1] == ALIVE ? 1 : 0)
+                    + (d[i + w] == ALIVE ? 1 : 0) + (d[i + w + 1] == ALIVE ? 1 : 0);
+            out[i] = nextState(d[i], aliveNeighbors);
+        }
+        for (; i < to; i++) {
+            out[i] = isAliveWrapped(i, d);
+        }
+    }
+
+    /**
+     * Same neighbourhood as the reference engine, wrapping positions around the 1d grid.
+     */
+    private byte isAliveWrapped(int pos, byte[] d) {
+        int aliveNeighbors = 0;
+        for (int row = -1; row <= 1; row++) {
+            for (int col = -1; col <= 1; col++) {
+                if (row == 0 && col == 0) {
+                    continue;
+                }
+                int neighborPos = Math.floorMod(pos + row * width + col, size);
+                if (d[neighborPos] == ALIVE) {
+                    aliveNeighbors++;
+                }
+            }
+        }
+        return nextState(d[pos], aliveNeighbors);
+    }
+
+    private static byte nextState(byte cell, int aliveNeighbors) {
+        if (cell == DEAD) {
+            return aliveNeighbors == 3 ? ALIVE : DEAD;
+        }
+        return (aliveNeighbors < 2 || aliveNeighbors > 3) ? DEAD : ALIVE;
+    }
+}
@@ -0,0 +1,129 @@
+package pt.ulisboa.tecnico.cnv.gameoflife.engines;
+
+import java.util.Arrays;
+
+/**
+ * Game of Life engine for large, mostly empty maps. On top of the bit-packed layout it keeps track of the words of 64
+ * cells that may change: each generation only recomputes the words next to a cell that changed in the previous
+ * generation. When most words are active it computes whole generations like the bit-packed engine for a while.
+ *
+ * The engine keeps track of activity between {@link #play(int)} calls, so the grid must only be changed through it.
+ */
+public class SparseGameOfLife extends BitPackedGameOfLife {
+
+    /**
+     * Fraction of active words above which computing the whole grid is cheaper than tracking words.
+     */
+    public static final double DENSE_RATIO = 0.5;
+    public static final int DENSE_CHUNK = 16;
+
+    private final boolean[] marked;
+    private final int[] active;
+    private int activeCount;
+    private int denseGenerations = 0;
+
+    private final int[] changedWords;
+    private final long[] changedValues;
+
+    public SparseGameOfLife(int width, int height, byte[] data) {
+        super(width, height, data);
+        this.marked = new boolean[words];
+        this.active = new int[words];
+        this.changedWords = new int[words];
+        this.changedValues = new long[words];
+        markAll();
+    }
+
+    @Override
+    public void play(int iterations) {
+        // The first generation of a non-binary grid is computed by the reference engine, out of our sight.
+        if (iterations > 0 && !isBinary()) {
+            markAll();
+        }
+        super.play(iterations);
+    }
+
+    /**
+     * Fraction of words that will be recomputed in the next generation.
+     */
+    public double getActivityRatio() {
+        return (double) activeCount / words;
+    }
+
+    /**
+     * Iterates the game one step forward, recomputing only the active words.
+     */
+    @Override
+    void iterate() {
+        if (denseGenerations == 0 && activeCount > DENSE_RATIO * words) {
+            denseGenerations = DENSE_CHUNK;
+        }
+        if (denseGenerations > 0) {
+            if (--denseGenerations > 0) {
+                super.iterate();
+                return;
+            }
+            // The last generation of the chunk is computed on every word to learn which ones changed.
+            markAll();
+        }
+
+        long[] cur = current;
+        int changes = 0;
+        for (int a = 0; a < activeCount; a++) {
+            int j = active[a];
+            marked[j] = false;
+            long value = nextWord(cur, j);
+            if (value != cur[padWords + j]) {
+                changedWords[changes] = j;
+                changedValues[changes] = value;
+                changes++;
+            }
+        }
+
+        activeCount = 0;
+        for (int c = 0; c < changes; c++) {
+            int j = changedWords[c];
+            long diff = cur[padWords + j] ^ changedValues[c];
+            cur[padWords + j] = changedValues[c];
+            // Every cell whose neighbourhood contains a changed cell may change in the next generation.
+            long first = ((long) j << 6) + Long.numberOfTrailingZeros(diff);
+            long last = ((long) j << 6) + 63 - Long.numberOfLeadingZeros(diff);
+            markRange(first - width - 1, last - width + 1);
+            markRange(first - 1, last + 1);
+            markRange(first + width - 1, last + width + 1);
+        }
+        if (changes > 0) {
+            fillHalos(cur);
+        }
+    }
+
+    /**
+     * Marks the words holding the cells [from, to] of the ring, a range no longer than 66 cells. A range wrapping
+     * around the end of the ring also covers the last word, which may be shorter than 64 cells.
+     */
+    private void markRange(long from, long to) {
+        long cell = Math.floorMod(from, (long) size);
+        long count = to - from + 1;
+        while (count > 0) {
+            mark((int) (cell >>> 6));
+            long inWord = Math.min(64 - (cell & 63), size - cell);
+            count -= inWord;
+            cell = (cell + inWord == size) ? 0 : cell + inWord;
+        }
+    }
+
+    private void mark(int word) {
+        if (!marked[word]) {
+            marked[word] = true;
+            active[activeCount++] = word;
+        }
+    }
+
+    private void markAll() {
+        Arrays.fill(marked, true);
+        for (int j = 0; j < words; j++) {
+            active[j] = j;
+        }
+        activeCount = words;
+    }
+}
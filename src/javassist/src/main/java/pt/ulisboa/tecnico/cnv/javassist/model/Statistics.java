@@ -27,6 +27,11 @@ public class Statistics {
 
     private long complexity = 0;
 
+    /**
+     * Work units the workload actually computed (e.g. Game of Life generations), when the workload reports them.
+     */
+    private long simulatedWork = 0;
+
     public Statistics(){
         nblocks = 0;
         nmethod = 0;
@@ -51,6 +56,10 @@ public class Statistics {
 
     public long getComplexity(){return complexity;}
 
+    public long getSimulatedWork(){return simulatedWork;}
+
+    public void setSimulatedWork(long simulatedWork){this.simulatedWork = simulatedWork;}
+
     public void incrementNblocks(){
         nblocks++;
     }
@@ -62,6 +71,17 @@ public class Statistics {
     }
     public void incrementNdataWrites(){ndataWrites++;}
     public void incrementNdataReads(){ndataReads++;}
+
+    /**
+     * Adds the counts of work another thread (e.g. a fork/join worker) did for this request.
+     */
+    public synchronized void add(Statistics other) {
+        nblocks += other.nblocks;
+        nmethod += other.nmethod;
+        ninsts += other.ninsts;
+        ndataWrites += other.ndataWrites;
+        ndataReads += other.ndataReads;
+    }
     public long computeComplexity(String game) {
         return computeComplexity(game, this.nmethod, this.ninsts);
     }
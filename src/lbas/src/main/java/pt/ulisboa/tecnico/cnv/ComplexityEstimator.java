@@ -2,17 +2,29 @@ package pt.ulisboa.tecnico.cnv;
 
 import pt.ulisboa.tecnico.cnv.storage.StorageUtil;
 import pt.ulisboa.tecnico.cnv.util.CaptureTheFlagEstimator;
-import pt.ulisboa.tecnico.cnv.util.FifteenPuzzleEstimator;
+import pt.ulisboa.tecnico.cnv.util.FifteenPuzzleProbe;
 import pt.ulisboa.tecnico.cnv.util.GameOfLifeEstimator;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class ComplexityEstimator {
     private static final int MAX_ENTRIES = 5000;
+    /**
+     * Largest number of puzzles in a batch request, as accepted by the workers.
+     */
+    private static final int MAX_BATCH_PUZZLES = 1000;
     private static final double FIFTEEN_PUZZLE_SCALE_WEIGHT = 3.54;
     private static final double GAME_OF_LIFE_SCALE_WEIGHT = 1.84;
+    /**
+     * Complexity of a millisecond of work: {@link LoadBalancer#VM_CAPACITY} is 20 seconds.
+     */
+    private static final long COMPLEXITY_PER_MILLI = LoadBalancer.VM_CAPACITY / 20_000;
 
     public record ComplexityEstimate(long value, boolean storeMetrics) {}
 
@@ -26,7 +38,34 @@ public class ComplexityEstimator {
             }
     );
 
+    /**
+     * A 15-puzzle request with a {@code deadline} gives up improving its solution once the deadline passes, so its
+     * estimate is capped at the work that fits before it.
+     */
     public ComplexityEstimate estimateComplexity(String game, Map<String, String> params) {
+        ComplexityEstimate estimate = estimateUncapped(game, params);
+        Long deadline = deadlineMillis(game, params);
+        if (deadline != null && estimate.value() > deadline * COMPLEXITY_PER_MILLI) {
+            return new ComplexityEstimate(deadline * COMPLEXITY_PER_MILLI, estimate.storeMetrics());
+        }
+        return estimate;
+    }
+
+    private Long deadlineMillis(String game, Map<String, String> params) {
+        String deadline = params.get("deadline");
+        if (!game.equalsIgnoreCase("fifteenpuzzle") || deadline == null || deadline.isEmpty()) {
+            return null;
+        }
+        try {
+            long millis = Long.parseLong(deadline);
+            // Rejected by the worker when negative; 0 means no deadline.
+            return (millis > 0) ? millis : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private ComplexityEstimate estimateUncapped(String game, Map<String, String> params) {
         String cacheKey = StorageUtil.serializeParameters(params);
 
         // Try local cache first
@@ -46,6 +85,43 @@ public class ComplexityEstimator {
         return new ComplexityEstimate(normalizeComplexity(game, complexity), true);
     }
 
+    /**
+     * Estimate of a batch request ({@code puzzles=size:shuffles,...}): the sum of the estimates of its distinct puzzles
+     * (workers solve repeated ones once), capped at a whole VM so that a large batch can still be placed. Batches are
+     * not stored as metrics. Throws IllegalArgumentException on the lists the workers reject.
+     */
+    public ComplexityEstimate estimateBatchComplexity(String game, Map<String, String> params) {
+        String puzzles = params.get("puzzles");
+        if (puzzles == null || puzzles.isEmpty()) {
+            throw new IllegalArgumentException("The batch has no puzzles");
+        }
+        String[] pairs = puzzles.split(",");
+        if (pairs.length > MAX_BATCH_PUZZLES) {
+            throw new IllegalArgumentException("A batch holds at most " + MAX_BATCH_PUZZLES + " puzzles");
+        }
+        Set<List<Integer>> distinct = new LinkedHashSet<>();
+        for (String pair : pairs) {
+            String[] values = pair.trim().split(":");
+            if (values.length != 2) {
+                throw new IllegalArgumentException("Puzzles are size:shuffles pairs: " + pair);
+            }
+            distinct.add(List.of(Integer.parseInt(values[0]), Integer.parseInt(values[1])));
+        }
+
+        long complexity = 0;
+        for (List<Integer> puzzle : distinct) {
+            Map<String, String> puzzleParams = new HashMap<>();
+            puzzleParams.put("shuffles", String.valueOf(puzzle.get(1)));
+            puzzleParams.put("size", String.valueOf(puzzle.get(0)));
+            complexity += estimateComplexity(game, puzzleParams).value();
+            if (complexity >= LoadBalancer.VM_CAPACITY) {
+                // Capped anyway: the other puzzles need no lookups.
+                break;
+            }
+        }
+        return new ComplexityEstimate(Math.min(complexity, LoadBalancer.VM_CAPACITY), false);
+    }
+
     private Long normalizeComplexity(String game, Long complexity) {
         if(game.equals("FifteenPuzzle"))
             return Math.round(complexity * FIFTEEN_PUZZLE_SCALE_WEIGHT);
@@ -65,7 +141,7 @@ public class ComplexityEstimator {
 
     private Long approximateComplexityFromParams(String game, Map<String, String> params) {
         return switch (game.toLowerCase()) {
-            case "fifteenpuzzle" -> FifteenPuzzleEstimator.estimateComplexity(params);
+            case "fifteenpuzzle" -> FifteenPuzzleProbe.estimateComplexity(params);
             case "capturetheflag" -> CaptureTheFlagEstimator.estimateComplexity(params);
             case "gameoflife" -> GameOfLifeEstimator.estimateComplexity(params);
             default -> throw new IllegalArgumentException("Unsupported game: " + game);
@@ -4,6 +4,7 @@ import com.sun.net.httpserver.HttpExchange;
 
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
@@ -45,8 +46,18 @@ public class HttpForwarder {
         }
     }
 
+    /**
+     * Whether the request is a batch, e.g. {@code /fifteenpuzzle/batch}, whose response is streamed by the worker.
+     */
+    static boolean isBatch(HttpExchange exchange) {
+        return exchange.getRequestURI().getPath().endsWith("/batch");
+    }
+
     public static CompletableFuture<WorkerResponse> forwardRequest(Worker worker, HttpExchange exchange, boolean storeMetrics) {
         String targetUrl = buildTargetUrl(worker, exchange, storeMetrics);
+        if (isBatch(exchange)) {
+            return forwardBatch(targetUrl, exchange);
+        }
 
         HttpRequest request = HttpRequest.newBuilder()
                 .uri(URI.create(targetUrl))
@@ -67,6 +78,45 @@ public class HttpForwarder {
     }
 
 
+    /**
+     * Batches write one line per puzzle as soon as it is solved, so their responses are piped to the client while they
+     * arrive, with chunked encoding and without a timeout: a batch of up to 1000 puzzles can take far longer than a
+     * single request. The future completes once the whole body was copied, so that the worker's load is released only
+     * then, with a {@link WorkerResponse#streamed() streamed} response, or null if the worker could not be reached.
+     */
+    private static CompletableFuture<WorkerResponse> forwardBatch(String targetUrl, HttpExchange exchange) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(targetUrl))
+                .GET()
+                .build();
+
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+                .thenApply(httpResponse -> {
+                    int statusCode = httpResponse.statusCode();
+                    try (InputStream body = httpResponse.body()) {
+                        exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
+                        exchange.sendResponseHeaders(statusCode, 0);
+                        try (OutputStream os = exchange.getResponseBody()) {
+                            byte[] buffer = new byte[8192];
+                            int read;
+                            while ((read = body.read(buffer)) != -1) {
+                                os.write(buffer, 0, read);
+                                os.flush();
+                            }
+                        }
+                        System.out.println("Streamed response " + statusCode);
+                    } catch (IOException e) {
+                        // The headers may be out already, so the batch cannot be retried.
+                        System.out.println("Exception occurred while streaming response: " + e.getMessage());
+                    }
+                    return new WorkerResponse(statusCode, null, true);
+                })
+                .exceptionally(e -> {
+                    System.out.println("Failed to forward request to " + targetUrl + ": " + e.getMessage());
+                    return null;
+                });
+    }
+
     private static String buildTargetUrl(Worker worker, HttpExchange exchange, boolean storeMetrics) {
         StringBuilder url = new StringBuilder();
         url.append("http://").append(worker.getHost()).append(":").append(worker.getPort());
@@ -43,6 +43,11 @@ public class RequestAssigner implements HttpHandler {
             RequestContext context = buildRequestContext(exchange);
             WorkerResponse response = processRequest(exchange, context);
             handleResponse(response, exchange);
+        } catch (IllegalArgumentException e) {
+            // Parameters the workers would reject too, e.g. a malformed batch.
+            System.err.println("Invalid request: " + e.getMessage());
+            loadBalancer.getMetrics().incrementRejectedRequests();
+            sendErrorResponse(exchange, 400, "{ \"error\":\"" + e.getMessage() + "\"}");
         } catch (Exception e) {
             System.err.println("Error handling request: " + e.getMessage());
             loadBalancer.getMetrics().incrementRejectedRequests();
@@ -58,8 +63,10 @@ public class RequestAssigner implements HttpHandler {
     private RequestContext buildRequestContext(HttpExchange exchange) {
         Map<String, String> params = extractParameters(exchange);
         String game = extractGame(exchange);
-        ComplexityEstimator.ComplexityEstimate estimatedComplexity =
-                loadBalancer.getComplexityEstimator().estimateComplexity(game, params);
+        // A batch gets a single reservation, for all of its puzzles.
+        ComplexityEstimator.ComplexityEstimate estimatedComplexity = params.containsKey("puzzles")
+                ? loadBalancer.getComplexityEstimator().estimateBatchComplexity(game, params)
+                : loadBalancer.getComplexityEstimator().estimateComplexity(game, params);
         System.out.println("Complexity: " + estimatedComplexity.value());
         return new RequestContext(
                 estimatedComplexity.value(),
@@ -71,12 +78,14 @@ public class RequestAssigner implements HttpHandler {
     private WorkerResponse processRequest(HttpExchange exchange, RequestContext context)
             throws Exception {
         loadBalancer.printWorkerSummary();
-        for(int i = 0; i < MAX_RETRIES; i++) {
+        // A batch is streamed to the client as it is solved, so it is not run again.
+        int attempts = HttpForwarder.isBatch(exchange) ? 1 : MAX_RETRIES;
+        for(int i = 0; i < attempts; i++) {
             VmSelectionStrategy strategy = selectStrategy(context);
             CompletableFuture<WorkerResponse> responseFuture = loadBalancer.tryAssignToBestCandidate(exchange, context, strategy);
             if (responseFuture != null) {
                 WorkerResponse response = responseFuture.get();
-                if (response != null && response.isSuccess()) {
+                if (response != null && (response.isSuccess() || response.streamed())) {
                     return response;
                 }
             }
@@ -109,6 +118,9 @@ public class RequestAssigner implements HttpHandler {
     }
 
     private void handleResponse(WorkerResponse response, HttpExchange exchange) {
+        if (response != null && response.streamed()) {
+            return;
+        }
         if (response != null) {
             HttpForwarder.forwardResponse(response, exchange);
         } else {
@@ -123,9 +135,13 @@ public class RequestAssigner implements HttpHandler {
     }
 
     private void sendErrorResponse(HttpExchange exchange) {
+        sendErrorResponse(exchange, 500, "Internal Server Error");
+    }
+
+    private void sendErrorResponse(HttpExchange exchange, int statusCode, String message) {
         try {
-            byte[] response = "Internal Server Error".getBytes();
-            exchange.sendResponseHeaders(500, response.length);
+            byte[] response = message.getBytes();
+            exchange.sendResponseHeaders(statusCode, response.length);
             try (java.io.OutputStream os = exchange.getResponseBody()) {
                 os.write(response);
             }
@@ -137,7 +153,8 @@ public class RequestAssigner implements HttpHandler {
     private String extractGame(HttpExchange exchange) {
         String path = exchange.getRequestURI().getPath();
         String[] parts = path.split("/");
-        return parts[parts.length - 1];
+        // The game is the first segment, e.g. "fifteenpuzzle" in "/fifteenpuzzle/batch".
+        return parts[1];
     }
 
     private Map<String, String> extractParameters(HttpExchange exchange) {
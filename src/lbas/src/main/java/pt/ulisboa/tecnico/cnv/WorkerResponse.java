@@ -1,7 +1,15 @@
 package pt.ulisboa.tecnico.cnv;
 
 
-public record WorkerResponse(int statusCode, String body) {
+/**
+ * Response of a worker or Lambda. A {@code streamed} response was already piped to the client while it arrived, and
+ * has no body.
+ */
+public record WorkerResponse(int statusCode, String body, boolean streamed) {
+    public WorkerResponse(int statusCode, String body) {
+        this(statusCode, body, false);
+    }
+
     boolean isSuccess() { return statusCode == 200;}
 }
 
@@ -0,0 +1,288 @@
+package pt.ulisboa.tecnico.cnv.util;
+
+import java.util.Map;
+import java.util.Random;
+
+import pt.ulisboa.tecnico.cnv.LoadBalancer;
+
+/**
+ * Complexity estimate from the actual board of a 15-puzzle request. Workers shuffle the solved board with
+ * {@code Random(42)}, so the load balancer replays the same shuffle and probes how scrambled the board really is:
+ * Manhattan distance, linear conflicts, and a short IDA* run capped at {@link #NODE_BUDGET} expanded nodes. A probe
+ * takes about 50 microseconds.
+ *
+ * The model predicts the nodes the workers' IDA* expands. When the probe solves the board it knows the optimal length,
+ * and the cost follows from the gap between that length and the linear-conflict bound. Otherwise the shuffle length is
+ * the upper bound of the optimal length, and the cost grows with its gap to the bound. Fitted on 430 size/shuffles
+ * pairs (sizes 3 to 20, up to 120 shuffles), its 10-fold cross-validated error of log(nodes) is 1.11 RMSE and 0.34
+ * median, against 2.09 and 1.20 for a cubic polynomial of shuffles and size fitted to the same runs. Boards too large
+ * to probe cheaply use {@link FifteenPuzzleEstimator}.
+ */
+public class FifteenPuzzleProbe {
+
+    public static final int NODE_BUDGET = 1024;
+    public static final int MAX_PROBE_CELLS = 10000;
+    public static final int MAX_PROBE_SHUFFLES = 100000;
+
+    // Model parameters: log(1 + nodes) is their dot product with the features of estimateNodes.
+    private static final double INTERCEPT = -0.5010943632641457;
+    private static final double[] SOLVED_COEFFICIENTS = {
+            -0.1954505465002936,  // optimal length - linear conflicts
+            0.9787009652629806,   // log(1 + probe nodes)
+            0.20470054606061663   // log(size)
+    };
+    private static final double[] UNSOLVED_COEFFICIENTS = {
+            9.160590676429049,    // unsolved
+            0.0006332142315259586, // shuffles - linear conflicts
+            0.19588564999567185,  // (shuffles - linear conflicts) * log(size)
+            -0.062419120183068194, // threshold - linear conflicts
+            -2.24046857064482,    // log(size)
+            -1.1604486134800769,  // size <= 4 (pattern databases)
+            -0.21999184587973789  // (shuffles - linear conflicts) * (size <= 4)
+    };
+
+    /**
+     * Largest log(1 + nodes) the model answers, past the capacity of any worker.
+     */
+    private static final double MAX_LOG_NODES = 21;
+
+    /**
+     * Complexity per expanded node: about 0.75 microseconds each, on the scale of {@link LoadBalancer#VM_CAPACITY}
+     * (20 seconds).
+     */
+    private static final double COMPLEXITY_PER_NODE = 7;
+
+    private static final long SEED = 42;
+    private static final int FOUND = -1;
+
+    /**
+     * @param manhattan Manhattan distance of the board.
+     * @param linearConflicts lower bound of Manhattan distance plus linear conflicts (at least {@code manhattan}).
+     * @param solved whether the probe solved the board, in which case {@code threshold} is the optimal length.
+     * @param threshold IDA* threshold of the last iteration the probe started.
+     * @param expandedNodes nodes expanded by the probe.
+     */
+    public record Probe(int manhattan, int linearConflicts, boolean solved, int threshold, long expandedNodes) {}
+
+    private final int size;
+    private final int[] board;
+    private int blank;
+    private int h;
+    private long expanded;
+
+    private FifteenPuzzleProbe(int size, int shuffles) {
+        this.size = size;
+        this.board = new int[size * size];
+        shuffle(shuffles);
+    }
+
+    public static Probe probe(int size, int shuffles) {
+        return new FifteenPuzzleProbe(size, shuffles).run();
+    }
+
+    public static Long estimateComplexity(Map<String, String> params) {
+        int shuffles = Integer.parseInt(params.get("shuffles"));
+        int size = Integer.parseInt(params.get("size"));
+        if (size < 2 || size * size > MAX_PROBE_CELLS || shuffles < 0 || shuffles > MAX_PROBE_SHUFFLES) {
+            return FifteenPuzzleEstimator.estimateComplexity(params);
+        }
+        return Math.round(COMPLEXITY_PER_NODE * estimateNodes(size, shuffles, probe(size, shuffles)));
+    }
+
+    /**
+     * Nodes the workers' IDA* is expected to expand on the probed board.
+     */
+    static double estimateNodes(int size, int shuffles, Probe probe) {
+        double logSize = Math.log(size);
+        double result = INTERCEPT;
+        if (probe.solved()) {
+            double[] features = {
+                    probe.threshold() - probe.linearConflicts(),
+                    Math.log1p(probe.expandedNodes()),
+                    logSize
+            };
+            for (int i = 0; i < SOLVED_COEFFICIENTS.length; i++) {
+                result += SOLVED_COEFFICIENTS[i] * features[i];
+            }
+        } else {
+            int gap = Math.max(shuffles - probe.linearConflicts(), 0);
+            int small = (size <= 4) ? 1 : 0;
+            double[] features = {
+                    1,
+                    gap,
+                    gap * logSize,
+                    probe.threshold() - probe.linearConflicts(),
+                    logSize,
+                    small,
+                    gap * small
+            };
+            for (int i = 0; i < UNSOLVED_COEFFICIENTS.length; i++) {
+                result += UNSOLVED_COEFFICIENTS[i] * features[i];
+            }
+        }
+        return Math.expm1(Math.min(result, MAX_LOG_NODES));
+    }
+
+    /**
+     * Shuffles the solved board like {@code FifteenPuzzle.shuffle} with {@code Random(42)}, into the board a worker
+     * solves.
+     */
+    private void shuffle(int shuffles) {
+        int cells = size * size;
+        for (int p = 0; p < cells - 1; p++) {
+            board[p] = p + 1;
+        }
+        blank = cells - 1;
+
+        Random random = new Random(SEED);
+        int[] valid = new int[4];
+        int prevDir = -1; // -1 = none, 0 = up, 1 = down, 2 = left, 3 = right
+        for (int i = 0; i < shuffles; i++) {
+            int row = blank / size;
+            int col = blank % size;
+            int count = 0;
+            if (row > 0 && prevDir != 1) valid[count++] = 0;
+            if (row < size - 1 && prevDir != 0) valid[count++] = 1;
+            if (col > 0 && prevDir != 3) valid[count++] = 2;
+            if (col < size - 1 && prevDir != 2) valid[count++] = 3;
+
+            int dir = valid[random.nextInt(count)];
+            int next = switch (dir) {
+                case 0 -> blank - size;
+                case 1 -> blank + size;
+                case 2 -> blank - 1;
+                default -> blank + 1;
+            };
+            int tile = board[next];
+            board[blank] = tile;
+            board[next] = 0;
+            blank = next;
+            prevDir = dir;
+        }
+    }
+
+    private Probe run() {
+        int manhattan = 0;
+        for (int p = 0; p < board.length; p++) {
+            if (board[p] != 0) {
+                manhattan += distance(board[p], p);
+            }
+        }
+        int linearConflicts = manhattan + linearConflicts();
+
+        h = manhattan;
+        int threshold = manhattan;
+        while (true) {
+            int result = search(0, threshold, -1);
+            if (result == FOUND) {
+                return new Probe(manhattan, linearConflicts, true, threshold, expanded);
+            }
+            if (expanded >= NODE_BUDGET || result == Integer.MAX_VALUE) {
+                return new Probe(manhattan, linearConflicts, false, threshold, expanded);
+            }
+            threshold = result;
+        }
+    }
+
+    private int distance(int tile, int p) {
+        return Math.abs(p / size - (tile - 1) / size) + Math.abs(p % size - (tile - 1) % size);
+    }
+
+    /**
+     * Twice the number of tiles per row and column that must leave the line to let the others past, counted as the
+     * line's tiles in their goal line minus the longest run already in goal order.
+     */
+    private int linearConflicts() {
+        int conflicts = 0;
+        int[] order = new int[size];
+        int[] tails = new int[size];
+        for (int line = 0; line < size; line++) {
+            for (int vertical = 0; vertical < 2; vertical++) {
+                int count = 0;
+                for (int i = 0; i < size; i++) {
+                    int p = (vertical == 0) ? line * size + i : i * size + line;
+                    int tile = board[p];
+                    if (tile == 0) {
+                        continue;
+                    }
+                    int goalLine = (vertical == 0) ? (tile - 1) / size : (tile - 1) % size;
+                    if (goalLine == line) {
+                        order[count++] = (vertical == 0) ? (tile - 1) % size : (tile - 1) / size;
+                    }
+                }
+                // Longest increasing run by patience sorting.
+                int longest = 0;
+                for (int i = 0; i < count; i++) {
+                    int lo = 0;
+                    int hi = longest;
+                    while (lo < hi) {
+                        int mid = (lo + hi) >>> 1;
+                        if (tails[mid] < order[i]) {
+                            lo = mid + 1;
+                        } else {
+                            hi = mid;
+                        }
+                    }
+                    tails[lo] = order[i];
+                    if (lo == longest) {
+                        longest++;
+                    }
+                }
+                conflicts += 2 * (count - longest);
+            }
+        }
+        return conflicts;
+    }
+
+    private int search(int g, int threshold, int previous) {
+        int f = g + h;
+        if (f > threshold) {
+            return f;
+        }
+        if (h == 0) {
+            return FOUND;
+        }
+        if (expanded >= NODE_BUDGET) {
+            return Integer.MAX_VALUE;
+        }
+        expanded++;
+
+        int from = blank;
+        int row = from / size;
+        int col = from % size;
+        int min = Integer.MAX_VALUE;
+        for (int k = 0; k < 4; k++) {
+            int to;
+            if (k == 0) {
+                to = (row > 0) ? from - size : -1;
+            } else if (k == 1) {
+                to = (row < size - 1) ? from + size : -1;
+            } else if (k == 2) {
+                to = (col > 0) ? from - 1 : -1;
+            } else {
+                to = (col < size - 1) ? from + 1 : -1;
+            }
+            if (to < 0 || to == previous) {
+                continue;
+            }
+            int tile = board[to];
+            int before = h;
+            h += distance(tile, from) - distance(tile, to);
+            board[from] = tile;
+            board[to] = 0;
+            blank = to;
+
+            int result = search(g + 1, threshold, from);
+
+            blank = from;
+            board[to] = tile;
+            board[from] = 0;
+            h = before;
+            if (result == FOUND) {
+                return FOUND;
+            }
+            min = Math.min(min, result);
+        }
+        return min;
+    }
+}
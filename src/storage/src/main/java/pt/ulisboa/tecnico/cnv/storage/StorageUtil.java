@@ -79,6 +79,9 @@ public class StorageUtil {
         item.put("nmethod", new AttributeValue().withN(String.valueOf(nmethod)));
         item.put("ninsts", new AttributeValue().withN(String.valueOf(ninsts)));
         item.put("complexity", new AttributeValue().withN(String.valueOf(statistics.computeComplexity(game, nmethod, ninsts))));
+        if (statistics.getSimulatedWork() > 0) {
+            item.put("simulatedWork", new AttributeValue().withN(String.valueOf(statistics.getSimulatedWork())));
+        }
         PutItemRequest putRequest = new PutItemRequest()
                 .withTableName(TABLE_NAME)
                 .withItem(item);
@@ -7,6 +7,7 @@ import com.sun.net.httpserver.HttpServer;
 import pt.ulisboa.tecnico.cnv.capturetheflag.CaptureTheFlagHandler;
 import pt.ulisboa.tecnico.cnv.fifteenpuzzle.FifteenPuzzleHandler;
 import pt.ulisboa.tecnico.cnv.gameoflife.GameOfLifeHandler;
+import pt.ulisboa.tecnico.cnv.gameoflife.GameOfLifeStatsHandler;
 
 public class WebServer {
     public static void main(String[] args) throws Exception {
@@ -22,7 +23,9 @@ public class WebServer {
         server.setExecutor(java.util.concurrent.Executors.newCachedThreadPool());
         server.createContext("/", new RootHandler());
         server.createContext("/gameoflife", new GameOfLifeHandler());
+        server.createContext("/gameoflife/stats", new GameOfLifeStatsHandler());
         server.createContext("/fifteenpuzzle", new FifteenPuzzleHandler());
+        server.createContext("/fifteenpuzzle/batch", new FifteenPuzzleHandler());
         server.createContext("/capturetheflag", new CaptureTheFlagHandler());
         server.createContext("/test", new TestHandler());
         server.start();